@@ -0,0 +1,133 @@
+package com.example.android.booksearch;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookPage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the keys, disk round trip, expiry and trimming of {@link BookCache}, in a directory of
+ * its own.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BookCacheTest {
+
+    private static final String URL = "https://www.googleapis.com/books/v1/volumes?q=tolkien"
+            + "&maxResults=20&startIndex=0";
+    private static final String OTHER_URL = "https://www.googleapis.com/books/v1/volumes"
+            + "?q=lewis&maxResults=20&startIndex=0";
+
+    private static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long MAX_DISK_BYTES = 1024 * 1024;
+
+    private File mDir;
+
+    @Before
+    public void setUp() {
+        mDir = new File(InstrumentationRegistry.getTargetContext().getCacheDir(),
+                "book_cache_test");
+        deleteDir();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDir();
+    }
+
+    @Test
+    public void canonicalize_ignoresParameterOrderAndCase() {
+        assertEquals("https://www.googleapis.com/books/v1/volumes"
+                        + "?maxResults=20&q=tolkien&startIndex=0",
+                BookCache.canonicalize("https://www.googleapis.com/books/v1/volumes"
+                        + "?startIndex=0&q=%20Tolkien%20&maxResults=20"));
+        assertEquals(BookCache.canonicalize(URL),
+                BookCache.canonicalize(URL.replace("q=tolkien", "q=TOLKIEN")));
+        assertNotEquals(BookCache.canonicalize(URL), BookCache.canonicalize(OTHER_URL));
+    }
+
+    @Test
+    public void get_readsResultsBackFromDisk() {
+        BookPage page = page("1", "2");
+        new BookCache(mDir, TTL_MILLIS, MAX_DISK_BYTES).put(URL, page);
+
+        // A new cache has nothing in memory, so the result comes from disk
+        BookCache cache = new BookCache(mDir, TTL_MILLIS, MAX_DISK_BYTES);
+        BookPage cached = cache.get(URL);
+        assertNotNull(cached);
+        assertEquals(1, cache.getDiskHitCount());
+        assertEquals(page.getTotalItems(), cached.getTotalItems());
+        assertEquals(page.getBooks().size(), cached.getBooks().size());
+        for (int i = 0; i < page.getBooks().size(); i++) {
+            Book expected = page.getBooks().get(i);
+            Book actual = cached.getBooks().get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getAuthors(), actual.getAuthors());
+            assertEquals(expected.getRating(), actual.getRating(), 0);
+            assertEquals(expected.getRatingsCount(), actual.getRatingsCount());
+            assertEquals(expected.getUrl(), actual.getUrl());
+            assertEquals(expected.getSmallThumbnailUrl(), actual.getSmallThumbnailUrl());
+        }
+
+        assertNull(cache.get(OTHER_URL));
+    }
+
+    @Test
+    public void get_dropsExpiredResultsFromBothTiers() throws Exception {
+        BookCache cache = new BookCache(mDir, 200, MAX_DISK_BYTES);
+        cache.put(URL, page("1"));
+        assertNotNull(cache.get(URL));
+
+        Thread.sleep(300);
+        assertNull(cache.get(URL));
+        assertNull(new BookCache(mDir, 200, MAX_DISK_BYTES).get(URL));
+    }
+
+    @Test
+    public void put_trimsDiskToMaxSize() {
+        // Room for a single result: each new one evicts the one before it
+        BookCache cache = new BookCache(mDir, TTL_MILLIS, 1);
+        cache.put(URL, page("1"));
+        cache.put(OTHER_URL, page("2"));
+        assertEquals(1, cache.getDiskEvictionCount());
+
+        BookCache reopened = new BookCache(mDir, TTL_MILLIS, 1);
+        assertNull(reopened.get(URL));
+        assertNotNull(reopened.get(OTHER_URL));
+    }
+
+    private static BookPage page(String... ids) {
+        List<Book> books = new ArrayList<>();
+        for (String id : ids) {
+            books.add(new Book(id, "Book " + id,
+                    new ArrayList<>(Arrays.asList("J. R. R. Tolkien")), 4.5, 10,
+                    "http://books.google.com/books?id=" + id + "&source=gbs_api",
+                    "http://books.google.com/books/content?id=" + id + "&zoom=5"));
+        }
+        return new BookPage(books, 100);
+    }
+
+    private void deleteDir() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+}
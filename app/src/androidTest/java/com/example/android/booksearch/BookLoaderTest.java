@@ -0,0 +1,90 @@
+package com.example.android.booksearch;
+
+import android.app.Instrumentation;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a {@link BookLoader} whose page load is discarded by a full lane of the
+ * {@link BookExecutor} stops loading, so the next page can be requested again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BookLoaderTest {
+
+    /** Released at the end of every test, so the tasks holding the lane don't outlive it */
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+    }
+
+    @Test
+    public void discardedLoad_stopsLoadingPage() throws Exception {
+        final BookExecutor executor = BookExecutor.getInstance();
+        final BookExecutor.Lane lane = BookExecutor.Lane.PAGE_PREFETCH;
+
+        // Keep every thread of the lane busy, so the load waits in its queue
+        final CountDownLatch started = new CountDownLatch(lane.getMaxConcurrency());
+        for (int i = 0; i < lane.getMaxConcurrency(); i++) {
+            executor.execute(lane, new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        mRelease.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        final BookLoader loader = new BookLoader(InstrumentationRegistry.getTargetContext(), "") {
+            @Override
+            protected BookExecutor.Lane getLane() {
+                return lane;
+            }
+        };
+        final boolean[] isLoadingPage = new boolean[2];
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                loader.forceLoad();
+                isLoadingPage[0] = loader.isLoadingPage();
+
+                // Fill the queue behind the load, which discards it
+                for (int i = 0; i < lane.getMaxQueueDepth(); i++) {
+                    executor.execute(lane, new Runnable() {
+                        @Override
+                        public void run() {
+                        }
+                    });
+                }
+            }
+        });
+
+        // The discarded load finishes on the main thread
+        instrumentation.waitForIdleSync();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                isLoadingPage[1] = loader.isLoadingPage();
+            }
+        });
+
+        assertTrue(isLoadingPage[0]);
+        assertFalse(isLoadingPage[1]);
+    }
+}
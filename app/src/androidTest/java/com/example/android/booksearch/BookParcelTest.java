@@ -0,0 +1,64 @@
+package com.example.android.booksearch;
+
+import android.os.Parcel;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.booksearch.core.Book;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a {@link Book} written to a {@link Parcel} by {@link ParcelableBook} reads back
+ * equal, with its shared strings shared again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BookParcelTest {
+
+    @Test
+    public void parcel_roundTrip() {
+        Book book = new Book("HJ2vAAAAQBAJ", "The Hobbit",
+                new ArrayList<>(Arrays.asList("J. R. R. Tolkien")), 4.5, 1234,
+                "http://books.google.com/books?id=HJ2vAAAAQBAJ&dq=tolkien&hl=&source=gbs_api",
+                "http://books.google.com/books/content?id=HJ2vAAAAQBAJ&printsec=frontcover"
+                        + "&img=1&zoom=5&edge=curl&source=gbs_api");
+
+        Book restored = roundTrip(book);
+        assertEquals(book.getId(), restored.getId());
+        assertEquals(book.getTitle(), restored.getTitle());
+        assertEquals(book.getAuthors(), restored.getAuthors());
+        assertEquals(book.getRating(), restored.getRating(), 0);
+        assertEquals(book.getRatingsCount(), restored.getRatingsCount());
+        assertEquals(book.getUrl(), restored.getUrl());
+        assertEquals(book.getSmallThumbnailUrl(), restored.getSmallThumbnailUrl());
+        assertSame(book.getAuthors().get(0), restored.getAuthors().get(0));
+    }
+
+    @Test
+    public void parcel_roundTripWithoutId() {
+        Book book = new Book(null, "Untitled", new ArrayList<String>(), -1, -1,
+                "http://books.google.com/books?id=x", "http://books.google.com/thumbnail");
+
+        Book restored = roundTrip(book);
+        assertNull(restored.getId());
+        assertTrue(restored.getAuthors().isEmpty());
+        assertEquals(book.getUrl(), restored.getUrl());
+        assertEquals(book.getSmallThumbnailUrl(), restored.getSmallThumbnailUrl());
+    }
+
+    private static Book roundTrip(Book book) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            new ParcelableBook(book).writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return ParcelableBook.CREATOR.createFromParcel(parcel).getBook();
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
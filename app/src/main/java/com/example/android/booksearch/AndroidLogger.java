@@ -0,0 +1,21 @@
+package com.example.android.booksearch;
+
+import android.util.Log;
+
+import com.example.android.booksearch.core.Logger;
+
+/**
+ * {@link Logger} that writes the log messages of the core engine to android.util.Log.
+ */
+public final class AndroidLogger extends Logger {
+
+    @Override
+    protected void info(String tag, String message) {
+        Log.i(tag, message);
+    }
+
+    @Override
+    protected void error(String tag, String message, Throwable throwable) {
+        Log.e(tag, message, throwable);
+    }
+}
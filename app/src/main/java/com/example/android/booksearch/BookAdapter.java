@@ -1,106 +1,312 @@
 package com.example.android.booksearch;
 
 import android.content.Context;
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.squareup.picasso.Picasso;
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookDisplayModel;
+import com.example.android.booksearch.core.SearchMetrics;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Class that creates a custom ArrayAdapter to generate list items for book objects.
+ * Class that creates a custom RecyclerView adapter to generate list items for book objects.
+ *
+ * Views of each list item are looked up once, when its {@link BookViewHolder} is created. When
+ * the list of books changes, only the rows that changed are rebound: pages appended to the end
+ * are inserted right away, and any other change is diffed on a background thread and applied
+ * once the diff is ready.
  */
 
-public class BookAdapter extends ArrayAdapter<Book> {
+public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder> {
+
+    /**
+     * Listener for clicks on a book of the list.
+     */
+    public interface OnBookClickListener {
+
+        /**
+         * Called when the given book is clicked.
+         */
+        void onBookClick(Book book);
+    }
+
+    /** Context used to inflate list items and load thumbnails */
+    private final Context mContext;
+
+    /** Listener for clicks on books */
+    private final OnBookClickListener mClickListener;
+
+    /** Books shown right now. Replaced, never modified, so diffs can read it in the background. */
+    private List<Book> mBooks = Collections.emptyList();
+
+    /** Books passed to the latest call to setBooks(), which may still be being diffed */
+    private List<Book> mLatestBooks = Collections.emptyList();
+
+    /** Loads and prefetches thumbnails */
+    private final ThumbnailLoader mThumbnails;
+
+    /** Amount of rows past the last visible one whose thumbnails are prefetched */
+    private final int mPrefetchRows;
+
+    /** Position up to which thumbnails of the latest books were prefetched, exclusive */
+    private int mPrefetchedUpTo;
+
+    /** Number of the latest call to setBooks(), used to drop diffs of lists replaced since */
+    private int mGeneration;
+
+    /** Handler used to apply diffs computed in the background on the main thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     /**
      * Constructs a new {@link BookAdapter}.
      *
      * @param context of the app
-     * @param books is the list of books, which is the data source of the adapter
+     * @param clickListener listener for clicks on books
      */
-    public BookAdapter (Context context, List books){
-        super(context, 0, books);
+    public BookAdapter(Context context, OnBookClickListener clickListener) {
+        mContext = context;
+        mClickListener = clickListener;
+        mThumbnails = ThumbnailLoader.getInstance(context);
+        mPrefetchRows = context.getResources().getInteger(R.integer.thumbnail_prefetch_rows);
     }
 
     /**
-     * Returns a list item view that displays information about the book at the given position
-     * in the list of books.
+     * Show the given list of books. Pages are appended to the end of the list as they load, so
+     * when the books already shown are the start of the new list, only the new books are
+     * inserted. Otherwise the difference between both lists is computed in the background, and
+     * only the rows that changed are updated.
+     *
+     * @param books every book loaded so far for the current query; must not be modified later
      */
-    @NonNull
-    @Override
-    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-
-        // Check if there is an existing list item view (called convertView) that we can reuse,
-        // otherwise, if convertView is null, then inflate a new list item layout.
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.list_item, parent, false);
+    public void setBooks(final List<Book> books) {
+        final int generation = ++mGeneration;
+        final List<Book> oldBooks = mBooks;
+        int oldCount = oldBooks.size();
+
+        boolean isContinuation = oldCount <= books.size();
+        for (int i = 0; isContinuation && i < oldCount; i++) {
+            isContinuation = oldBooks.get(i) == books.get(i);
+        }
+
+        // Thumbnails prefetched for books that are going away aren't needed anymore
+        mLatestBooks = books;
+        if (!isContinuation) {
+            mThumbnails.cancelPrefetches();
+            mPrefetchedUpTo = 0;
         }
 
-        Book currentBook = getItem(position);
+        // Nothing to diff against
+        if (oldCount == 0 || books.isEmpty()) {
+            mBooks = books;
+            if (oldCount > 0) {
+                notifyItemRangeRemoved(0, oldCount);
+            }
+            notifyItemRangeInserted(0, books.size());
+            return;
+        }
 
-        // Find image view for thumbnail
-        ImageView bookThumbnailImageView = (ImageView) listItemView.findViewById(R.id.book_image);
+        if (isContinuation) {
+            mBooks = books;
+            notifyItemRangeInserted(oldCount, books.size() - oldCount);
+            return;
+        }
 
-        // Get URL that leads to thumbnail and remove curled edge effect on image's lower right
-        // corner
-        String smallThumbnailUrl = currentBook.getSmallThumbnailUrl().replace("&edge=curl", "");
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult diff =
+                        DiffUtil.calculateDiff(new BookDiffCallback(oldBooks, books));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Apply the diff unless the list was replaced again in the meantime
+                        if (generation == mGeneration) {
+                            mBooks = books;
+                            diff.dispatchUpdatesTo(BookAdapter.this);
+                        }
+                    }
+                });
+            }
+        });
+    }
 
-        // Load image from internet and set it into image view
-        Picasso.with(getContext()).load(smallThumbnailUrl).into(bookThumbnailImageView);
+    /**
+     * Prefetch the thumbnails of the rows following the given position, unless they were
+     * prefetched already, so they are in memory before those rows scroll into view.
+     *
+     * @param lastVisiblePosition position of the last row on screen, or -1 if there is none
+     */
+    public void prefetchThumbnails(int lastVisiblePosition) {
+        int start = Math.max(lastVisiblePosition + 1, mPrefetchedUpTo);
+        int end = Math.min(lastVisiblePosition + 1 + mPrefetchRows, mLatestBooks.size());
+        for (int position = start; position < end; position++) {
+            mThumbnails.prefetch(mLatestBooks.get(position).getDisplayModel().getThumbnailUrl());
+        }
+        mPrefetchedUpTo = Math.max(mPrefetchedUpTo, end);
+    }
 
-        TextView titleTextView = (TextView) listItemView.findViewById(R.id.title_text_view);
+    /**
+     * Remove every book from the list.
+     */
+    public void clear() {
+        setBooks(Collections.<Book>emptyList());
+    }
 
-        titleTextView.setText(currentBook.getTitle());
+    /**
+     * Returns the books passed to the latest call to {@link #setBooks(List)}, which may still be
+     * being diffed against the books shown.
+     */
+    public List<Book> getBooks() {
+        return mLatestBooks;
+    }
 
-        // Find authors text view
-        TextView authorsTextView = (TextView) listItemView.findViewById(R.id.author_text_view);
+    /**
+     * Returns the book at the given position.
+     */
+    public Book getItem(int position) {
+        return mBooks.get(position);
+    }
 
-        // If list of authors is empty, show that this information is not available. Otherwise
-        // set text to authors array list without brackets at the beginning and end.
-        if (currentBook.getAuthors().isEmpty()) {
-            authorsTextView.setText(R.string.not_available);
-        } else {
-            String authors = currentBook.getAuthors().toString();
-            authorsTextView.setText(authors.substring(1, authors.length() - 1));
+    @Override
+    public int getItemCount() {
+        return mBooks.size();
+    }
+
+    @Override
+    public BookViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(mContext).inflate(
+                R.layout.list_item, parent, false);
+        return new BookViewHolder(listItemView);
+    }
+
+    /**
+     * Displays information about the book at the given position in the list of books. Every
+     * text shown and the thumbnail URL were built when the book was created, so reading them
+     * allocates nothing; only the thumbnail request allocates, in Picasso.
+     */
+    @Override
+    public void onBindViewHolder(BookViewHolder holder, int position) {
+        long startNanos = System.nanoTime();
+        holder.bind(mBooks.get(position).getDisplayModel());
+        SearchMetrics.getInstance().recordDuration(SearchMetrics.Stage.BIND,
+                System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Cancels the thumbnail request of a list item that scrolled away, so it doesn't compete
+     * with those of the rows on screen.
+     */
+    @Override
+    public void onViewRecycled(BookViewHolder holder) {
+        mThumbnails.cancel(holder.mThumbnailImageView);
+    }
+
+    /**
+     * Holds the views of a list item, found once when the item is inflated.
+     */
+    class BookViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+
+        final ImageView mThumbnailImageView;
+        final TextView mTitleTextView;
+        final TextView mAuthorsTextView;
+        final TextView mRatingTextView;
+        final TextView mRatingsCountTextView;
+
+        BookViewHolder(View itemView) {
+            super(itemView);
+            mThumbnailImageView = (ImageView) itemView.findViewById(R.id.book_image);
+            mTitleTextView = (TextView) itemView.findViewById(R.id.title_text_view);
+            mAuthorsTextView = (TextView) itemView.findViewById(R.id.author_text_view);
+            mRatingTextView = (TextView) itemView.findViewById(R.id.rating_text_view);
+            mRatingsCountTextView = (TextView) itemView.findViewById(R.id.ratings_count_text_view);
+            itemView.setOnClickListener(this);
         }
 
-        // Find rating text view.
-        TextView ratingTextView = (TextView) listItemView.findViewById(R.id.rating_text_view);
+        /**
+         * Show the given book in this list item.
+         */
+        void bind(BookDisplayModel book) {
+            // Load image from internet, or from the caches, and set it into image view
+            mThumbnails.load(book.getThumbnailUrl(), mThumbnailImageView);
 
-        //Get rating
-        double rating = currentBook.getRating();
+            mTitleTextView.setText(book.getTitle());
 
-        // Check if a rating was found. -1 means that there was no rating found or that the value
-        // couldn't be coerced to a double.
-        if (rating == -1) {
-            ratingTextView.setText(R.string.not_available);
-        } else {
-            ratingTextView.setText(rating + "");
+            // Show that any information missing is not available
+            setTextOrNotAvailable(mAuthorsTextView, book.getAuthors());
+            setTextOrNotAvailable(mRatingTextView, book.getRating());
+            setTextOrNotAvailable(mRatingsCountTextView, book.getRatingsCount());
         }
 
-        // Find ratings count text view
-        TextView ratingsCountTextView = (TextView) listItemView.findViewById(R.id.ratings_count_text_view);
+        private void setTextOrNotAvailable(TextView textView, String text) {
+            if (text == null) {
+                textView.setText(R.string.not_available);
+            } else {
+                textView.setText(text);
+            }
+        }
+
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                mClickListener.onBookClick(mBooks.get(position));
+            }
+        }
+    }
+
+    /**
+     * Compares two lists of books for {@link DiffUtil}. Books are the same item when they have the
+     * same key, and have the same contents when everything shown in a list item is equal.
+     */
+    private static final class BookDiffCallback extends DiffUtil.Callback {
 
-        // Get ratings count
-        int ratingsCount = currentBook.getRatingsCount();
+        private final List<Book> mOldBooks;
+        private final List<Book> mNewBooks;
+
+        BookDiffCallback(List<Book> oldBooks, List<Book> newBooks) {
+            mOldBooks = oldBooks;
+            mNewBooks = newBooks;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldBooks.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewBooks.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return BookStore.getBookKey(mOldBooks.get(oldPosition))
+                    .equals(BookStore.getBookKey(mNewBooks.get(newPosition)));
+        }
 
-        // Check if a ratings count was found. -1 means that there was no ratings count found or
-        // that the value couldn't be coerced to an int.
-        if (ratingsCount == -1) {
-            ratingsCountTextView.setText(R.string.not_available);
-        } else {
-            ratingsCountTextView.setText("(" + ratingsCount + ")");
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            Book oldBook = mOldBooks.get(oldPosition);
+            Book newBook = mNewBooks.get(newPosition);
+            return oldBook == newBook
+                    || (TextUtils.equals(oldBook.getTitle(), newBook.getTitle())
+                    && oldBook.getAuthors().equals(newBook.getAuthors())
+                    && oldBook.getRating() == newBook.getRating()
+                    && oldBook.getRatingsCount() == newBook.getRatingsCount()
+                    && TextUtils.equals(oldBook.getDisplayModel().getThumbnailUrl(),
+                            newBook.getDisplayModel().getThumbnailUrl()));
         }
-        return listItemView;
     }
 }
@@ -0,0 +1,464 @@
+package com.example.android.booksearch;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookPage;
+import com.example.android.booksearch.core.QueryUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two-tier cache of query results placed in front of {@link QueryUtils#fetchBookData(String)}.
+ *
+ * The first tier is a size-bounded in-memory LRU of parsed {@link BookPage}s. The second
+ * tier keeps a compact binary copy of each result in the app's cache directory. Results expire
+ * in both tiers after a fixed time to live, counted from when they were fetched. Both tiers are
+ * keyed by the canonical form of the query URL.
+ */
+public final class BookCache {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = BookCache.class.getSimpleName();
+
+    /** Maximum amount of books kept in memory, across all cached queries */
+    private static final int MEMORY_CACHE_MAX_BOOKS = 400;
+
+    /** Maximum size of all the files in the disk cache, in bytes */
+    private static final long DISK_CACHE_MAX_BYTES = 2 * 1024 * 1024;
+
+    /** Time after which a result is considered expired, in either tier */
+    private static final long CACHE_TTL_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    /** Name of the directory, inside the app's cache directory, holding the disk cache */
+    private static final String DISK_CACHE_DIR = "book_queries";
+
+    /** Version of the binary format of disk cache files. Files of other versions are ignored. */
+    private static final int DISK_FORMAT_VERSION = 2;
+
+    /** Single instance of the cache, shared by every {@link BookLoader} */
+    private static BookCache sInstance;
+
+    /** In-memory tier, sized by amount of books */
+    private final LruCache<String, Entry> mMemoryCache;
+
+    /** Directory holding the disk tier */
+    private final File mDiskCacheDir;
+
+    /** Time after which a result is considered expired, in milliseconds */
+    private final long mTtlMillis;
+
+    /** Maximum size of all the files in the disk tier, in bytes */
+    private final long mMaxDiskBytes;
+
+    /** Lock guarding access to the files of the disk tier and its counters */
+    private final Object mDiskLock = new Object();
+
+    /** Amount of lookups answered by the disk tier */
+    private int mDiskHitCount;
+
+    /** Amount of lookups that missed the disk tier */
+    private int mDiskMissCount;
+
+    /** Amount of files removed from the disk tier because they expired or to free space */
+    private int mDiskEvictionCount;
+
+    /**
+     * Returns the single {@link BookCache} instance, creating it if needed.
+     *
+     * @param context any context, only its application context is kept
+     */
+    public static synchronized BookCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BookCache(
+                    new File(context.getApplicationContext().getCacheDir(), DISK_CACHE_DIR),
+                    CACHE_TTL_MILLIS, DISK_CACHE_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructs a cache kept in the given directory. Outside of tests, use
+     * {@link #getInstance(Context)}.
+     *
+     * @param diskCacheDir directory holding the disk tier
+     * @param ttlMillis time after which a result is considered expired, in milliseconds
+     * @param maxDiskBytes maximum size of all the files in the disk tier, in bytes
+     */
+    BookCache(File diskCacheDir, long ttlMillis, long maxDiskBytes) {
+        mDiskCacheDir = diskCacheDir;
+        mTtlMillis = ttlMillis;
+        mMaxDiskBytes = maxDiskBytes;
+        mMemoryCache = new LruCache<String, Entry>(MEMORY_CACHE_MAX_BOOKS) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                // Count empty results as one so that they still take up room
+                return Math.max(1, entry.mPage.getBooks().size());
+            }
+        };
+    }
+
+    /**
+     * Returns the canonical form of a query URL: parameters sorted by name and the search
+     * terms in lower case, since the Google Books API ignores case.
+     *
+     * @param url query URL
+     * @return canonical query URL, used as the cache key
+     */
+    public static String canonicalize(String url) {
+        Uri uri = Uri.parse(url);
+        Uri.Builder builder = uri.buildUpon().clearQuery();
+
+        Set<String> names = new TreeSet<>(uri.getQueryParameterNames());
+        for (String name : names) {
+            for (String value : uri.getQueryParameters(name)) {
+                if ("q".equals(name)) {
+                    value = value.trim().toLowerCase(Locale.US);
+                }
+                builder.appendQueryParameter(name, value);
+            }
+        }
+        return builder.build().toString();
+    }
+
+    /**
+     * Returns the cached page of books for the given query URL, looking first in memory and then
+     * on disk, or null if there is none or it has expired.
+     *
+     * @param url query URL
+     * @return cached page of books, or null
+     */
+    public BookPage get(String url) {
+        String key = canonicalize(url);
+
+        Entry entry = mMemoryCache.get(key);
+        if (entry != null) {
+            if (!isExpired(entry.mFetchedAt)) {
+                return entry.mPage;
+            }
+
+            // Written to disk at the same time, so expired there as well
+            mMemoryCache.remove(key);
+        }
+
+        entry = readFromDisk(key);
+        if (entry == null) {
+            return null;
+        }
+
+        // Promote the result to the memory tier so the next lookup is even faster. It keeps the
+        // time it was fetched, so it doesn't outlive the copy on disk.
+        mMemoryCache.put(key, entry);
+        return entry.mPage;
+    }
+
+    /**
+     * Stores the page of books for the given query URL in both tiers.
+     *
+     * @param url query URL
+     * @param page page of books fetched for the query
+     */
+    public void put(String url, BookPage page) {
+        String key = canonicalize(url);
+
+        // Pages are immutable, so the caller can't change the page kept
+        mMemoryCache.put(key, new Entry(page, System.currentTimeMillis()));
+        writeToDisk(key, page);
+    }
+
+    /**
+     * Returns whether a result fetched at the given time has expired.
+     *
+     * @param fetchedAt time the result was fetched, from System.currentTimeMillis()
+     */
+    private boolean isExpired(long fetchedAt) {
+        return System.currentTimeMillis() - fetchedAt > mTtlMillis;
+    }
+
+    /**
+     * Returns a one-line summary of the hit, miss and eviction counters of both tiers, so the
+     * sizes above can be tuned.
+     */
+    public String getStats() {
+        synchronized (mDiskLock) {
+            return String.format(Locale.US,
+                    "memory[hits=%d, misses=%d, evictions=%d, size=%d/%d] "
+                            + "disk[hits=%d, misses=%d, evictions=%d]",
+                    mMemoryCache.hitCount(), mMemoryCache.missCount(),
+                    mMemoryCache.evictionCount(), mMemoryCache.size(), mMemoryCache.maxSize(),
+                    mDiskHitCount, mDiskMissCount, mDiskEvictionCount);
+        }
+    }
+
+    /** Returns the amount of lookups answered by the memory tier */
+    public int getMemoryHitCount() {
+        return mMemoryCache.hitCount();
+    }
+
+    /** Returns the amount of lookups that missed the memory tier */
+    public int getMemoryMissCount() {
+        return mMemoryCache.missCount();
+    }
+
+    /** Returns the amount of results evicted from the memory tier */
+    public int getMemoryEvictionCount() {
+        return mMemoryCache.evictionCount();
+    }
+
+    /** Returns the amount of lookups answered by the disk tier */
+    public int getDiskHitCount() {
+        synchronized (mDiskLock) {
+            return mDiskHitCount;
+        }
+    }
+
+    /** Returns the amount of lookups that missed the disk tier */
+    public int getDiskMissCount() {
+        synchronized (mDiskLock) {
+            return mDiskMissCount;
+        }
+    }
+
+    /** Returns the amount of files removed from the disk tier */
+    public int getDiskEvictionCount() {
+        synchronized (mDiskLock) {
+            return mDiskEvictionCount;
+        }
+    }
+
+    /**
+     * Returns the file that holds the result for the given key. The key itself is stored inside
+     * the file, so that two keys with the same hash code never return each other's result.
+     */
+    private File getDiskFile(String key) {
+        return new File(mDiskCacheDir, Integer.toHexString(key.hashCode()));
+    }
+
+    /**
+     * Read the result stored on disk for the given key, with the time it was written, or return
+     * null if there is none or it has expired.
+     */
+    private Entry readFromDisk(String key) {
+        synchronized (mDiskLock) {
+            File file = getDiskFile(key);
+
+            if (!file.exists()) {
+                mDiskMissCount++;
+                return null;
+            }
+
+            // Remove the file if its time to live has passed
+            long fetchedAt = file.lastModified();
+            if (isExpired(fetchedAt)) {
+                deleteDiskFile(file);
+                mDiskMissCount++;
+                return null;
+            }
+
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                BookPage page = readPage(in, key);
+                if (page == null) {
+                    mDiskMissCount++;
+                    return null;
+                }
+                mDiskHitCount++;
+                return new Entry(page, fetchedAt);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem reading cached books, removing cache file. ", e);
+                deleteDiskFile(file);
+                mDiskMissCount++;
+                return null;
+            } finally {
+                closeQuietly(in);
+            }
+        }
+    }
+
+    /**
+     * Write the result for the given key to disk and trim the disk tier back to its maximum size.
+     */
+    private void writeToDisk(String key, BookPage page) {
+        synchronized (mDiskLock) {
+            if (!mDiskCacheDir.isDirectory() && !mDiskCacheDir.mkdirs()) {
+                Log.e(LOG_TAG, "Could not create disk cache directory " + mDiskCacheDir);
+                return;
+            }
+
+            File file = getDiskFile(key);
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                writePage(out, key, page);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem writing books to the disk cache. ", e);
+                closeQuietly(out);
+                out = null;
+                file.delete();
+            } finally {
+                closeQuietly(out);
+            }
+
+            trimDiskCache(file);
+        }
+    }
+
+    /**
+     * Delete the least recently written files until the disk tier fits in its maximum size. The
+     * file just written is kept, even if files written in the same second sort after it.
+     *
+     * @param written file just written
+     */
+    private void trimDiskCache(File written) {
+        File[] files = mDiskCacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        if (totalBytes <= mMaxDiskBytes) {
+            return;
+        }
+
+        // Oldest files first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+
+        for (File file : files) {
+            if (totalBytes <= mMaxDiskBytes) {
+                break;
+            }
+            if (!file.equals(written)) {
+                totalBytes -= file.length();
+                deleteDiskFile(file);
+            }
+        }
+    }
+
+    /**
+     * Delete a file from the disk tier and count it as an eviction.
+     */
+    private void deleteDiskFile(File file) {
+        if (file.delete()) {
+            mDiskEvictionCount++;
+        }
+    }
+
+    /**
+     * Write the compact binary form of a result: format version, key, total amount of results,
+     * amount of books and then the fields of every book.
+     */
+    private static void writePage(DataOutputStream out, String key, BookPage page)
+            throws IOException {
+        List<Book> books = page.getBooks();
+        out.writeInt(DISK_FORMAT_VERSION);
+        out.writeUTF(key);
+        out.writeInt(page.getTotalItems());
+        out.writeInt(books.size());
+        for (Book book : books) {
+            // The volume ID may be null, which writeUTF() doesn't accept
+            out.writeBoolean(book.getId() != null);
+            if (book.getId() != null) {
+                out.writeUTF(book.getId());
+            }
+            out.writeUTF(book.getTitle());
+            List<String> authors = book.getAuthors();
+            out.writeInt(authors.size());
+            for (String author : authors) {
+                out.writeUTF(author);
+            }
+            out.writeDouble(book.getRating());
+            out.writeInt(book.getRatingsCount());
+            out.writeUTF(book.getUrl());
+            out.writeUTF(book.getSmallThumbnailUrl());
+        }
+    }
+
+    /**
+     * Read a result written by {@link #writePage(DataOutputStream, String, BookPage)}, or return
+     * null if it was written in another format version or for another key.
+     */
+    private static BookPage readPage(DataInputStream in, String key) throws IOException {
+        if (in.readInt() != DISK_FORMAT_VERSION || !key.equals(in.readUTF())) {
+            return null;
+        }
+
+        int totalItems = in.readInt();
+        int count = in.readInt();
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = in.readBoolean() ? in.readUTF() : null;
+            String title = in.readUTF();
+            int authorsCount = in.readInt();
+            ArrayList<String> authors = new ArrayList<>(authorsCount);
+            for (int j = 0; j < authorsCount; j++) {
+                authors.add(in.readUTF());
+            }
+            double rating = in.readDouble();
+            int ratingsCount = in.readInt();
+            String infoUrl = in.readUTF();
+            String smallThumbnailUrl = in.readUTF();
+            books.add(new Book(id, title, authors, rating, ratingsCount, infoUrl,
+                    smallThumbnailUrl));
+        }
+        return new BookPage(books, totalItems);
+    }
+
+    /**
+     * Page of books kept in the memory tier, with the time it was fetched.
+     */
+    private static final class Entry {
+
+        /** Page of books fetched */
+        final BookPage mPage;
+
+        /** Time the page was fetched, from System.currentTimeMillis() */
+        final long mFetchedAt;
+
+        Entry(BookPage page, long fetchedAt) {
+            mPage = page;
+            mFetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * Close a stream, ignoring any exception, since there is nothing left to do with it.
+     */
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem closing cache file. ", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.android.booksearch;
+
+import com.example.android.booksearch.core.LatencyTracker;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the background work of the app in separate lanes, one per kind of work, instead of on
+ * the thread pool shared by every AsyncTask in the process.
+ *
+ * Each lane runs at most a fixed amount of tasks at once and queues at most a fixed amount
+ * more; when its queue is full, the oldest queued task is discarded, since newer work is the
+ * most relevant. Lanes are ordered by urgency: while interactive tasks are queued no task of
+ * another lane starts, and tasks of the other lanes run on threads of lower priority, so the
+ * interactive lane always wins. The time each task waited in its queue is recorded per lane.
+ */
+public final class BookExecutor {
+
+    /**
+     * Kind of work, from most to least urgent.
+     */
+    public enum Lane {
+        /** Queries the user is waiting for */
+        INTERACTIVE(2, 4, Thread.NORM_PRIORITY),
+        /** Pages of results loaded ahead of the user */
+        PAGE_PREFETCH(1, 2, BACKGROUND_PRIORITY),
+        /** Thumbnails loaded ahead of the user */
+        THUMBNAIL_PREFETCH(4, 20, BACKGROUND_PRIORITY),
+        /** Revalidation of books already shown */
+        REFRESH(1, 4, BACKGROUND_PRIORITY),
+        /** Loading and saving the search history, one task at a time so they run in order */
+        HISTORY(1, 16, BACKGROUND_PRIORITY);
+
+        /** Maximum amount of tasks running at once */
+        private final int mMaxConcurrency;
+
+        /** Maximum amount of tasks waiting to run */
+        private final int mMaxQueueDepth;
+
+        /** Priority of the threads running the tasks */
+        private final int mThreadPriority;
+
+        Lane(int maxConcurrency, int maxQueueDepth, int threadPriority) {
+            mMaxConcurrency = maxConcurrency;
+            mMaxQueueDepth = maxQueueDepth;
+            mThreadPriority = threadPriority;
+        }
+
+        /**
+         * Returns the maximum amount of tasks of this lane running at once.
+         */
+        public int getMaxConcurrency() {
+            return mMaxConcurrency;
+        }
+
+        /**
+         * Returns the maximum amount of tasks of this lane waiting to run.
+         */
+        public int getMaxQueueDepth() {
+            return mMaxQueueDepth;
+        }
+    }
+
+    /**
+     * Java thread priority that Android maps to Process.THREAD_PRIORITY_BACKGROUND, so the
+     * threads of less urgent lanes get less CPU time than the UI and interactive threads
+     */
+    private static final int BACKGROUND_PRIORITY = 4;
+
+    /** Amount of latest queue wait times kept per lane */
+    private static final int WAIT_SAMPLES = 128;
+
+    /** Single instance of the executor, shared by every loader and list */
+    private static BookExecutor sInstance;
+
+    /** Threads running the tasks; their amount is bounded by the lanes */
+    private final Executor mThreads;
+
+    /** Tasks waiting to run, per lane. Guarded by this. */
+    private final Map<Lane, ArrayDeque<LaneTask>> mQueues = new EnumMap<>(Lane.class);
+
+    /** Amount of tasks running, per lane. Guarded by this. */
+    private final int[] mRunning = new int[Lane.values().length];
+
+    /** Amount of tasks discarded, per lane. Guarded by this. */
+    private final int[] mDiscarded = new int[Lane.values().length];
+
+    /** Time tasks waited in their queue before running, per lane */
+    private final Map<Lane, LatencyTracker> mQueueWait = new EnumMap<>(Lane.class);
+
+    /**
+     * Returns the single {@link BookExecutor} instance, creating it if needed.
+     */
+    public static synchronized BookExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new BookExecutor();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructs a new {@link BookExecutor}. Only tests need an executor of their own.
+     */
+    BookExecutor() {
+        mThreads = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "BookExecutor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for (Lane lane : Lane.values()) {
+            mQueues.put(lane, new ArrayDeque<LaneTask>());
+            mQueueWait.put(lane, new LatencyTracker(WAIT_SAMPLES));
+        }
+    }
+
+    /**
+     * Run a task in the given lane, as soon as the lane has room. If the queue of the lane is
+     * full, its oldest task is discarded; a discarded task that is a {@link Future} is
+     * cancelled, so whoever waits for it finds out.
+     *
+     * @param lane kind of work of the task
+     * @param task task to run
+     */
+    public void execute(Lane lane, Runnable task) {
+        LaneTask discarded = null;
+        synchronized (this) {
+            ArrayDeque<LaneTask> queue = mQueues.get(lane);
+            if (queue.size() >= lane.getMaxQueueDepth()) {
+                discarded = queue.pollFirst();
+                mDiscarded[lane.ordinal()]++;
+            }
+            queue.addLast(new LaneTask(lane, task));
+            dispatch();
+        }
+        if (discarded != null) {
+            discarded.discard();
+        }
+    }
+
+    /**
+     * Remove a task from the queue of its lane, if it hasn't started yet.
+     *
+     * @param lane lane the task was given to
+     * @param task task to remove
+     * @return true if the task was removed and will never run
+     */
+    public synchronized boolean remove(Lane lane, Runnable task) {
+        Iterator<LaneTask> iterator = mQueues.get(lane).iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().mTask == task) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Discard every task of the given lane that hasn't started yet, for example because it was
+     * made obsolete.
+     *
+     * @param lane lane to clear
+     */
+    public void clear(Lane lane) {
+        ArrayDeque<LaneTask> discarded;
+        synchronized (this) {
+            ArrayDeque<LaneTask> queue = mQueues.get(lane);
+            discarded = new ArrayDeque<>(queue);
+            queue.clear();
+        }
+        for (LaneTask task : discarded) {
+            task.discard();
+        }
+    }
+
+    /**
+     * Returns the times tasks of the given lane waited in its queue before running.
+     */
+    public LatencyTracker getQueueWait(Lane lane) {
+        return mQueueWait.get(lane);
+    }
+
+    /**
+     * Returns the amount of tasks of the given lane discarded so far because its queue was full.
+     */
+    public synchronized int getDiscardedCount(Lane lane) {
+        return mDiscarded[lane.ordinal()];
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Lane lane : Lane.values()) {
+            builder.append(String.format(Locale.US, "%s: %d running, %d queued, %d discarded, "
+                            + "queue wait %s; ", lane, mRunning[lane.ordinal()],
+                    mQueues.get(lane).size(), mDiscarded[lane.ordinal()], mQueueWait.get(lane)));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Start every queued task that its lane has room for, most urgent lanes first. Less urgent
+     * lanes wait while interactive tasks are queued. Must be called holding this.
+     */
+    private void dispatch() {
+        for (Lane lane : Lane.values()) {
+            if (lane != Lane.INTERACTIVE && !mQueues.get(Lane.INTERACTIVE).isEmpty()) {
+                return;
+            }
+            ArrayDeque<LaneTask> queue = mQueues.get(lane);
+            while (mRunning[lane.ordinal()] < lane.getMaxConcurrency() && !queue.isEmpty()) {
+                mRunning[lane.ordinal()]++;
+                mThreads.execute(queue.pollFirst());
+            }
+        }
+    }
+
+    /**
+     * Called when a task finished, to give its place to the next one.
+     */
+    private synchronized void onTaskFinished(Lane lane) {
+        mRunning[lane.ordinal()]--;
+        dispatch();
+    }
+
+    /**
+     * Task queued in a lane, which records how long it waited and runs at the priority of its
+     * lane.
+     */
+    private final class LaneTask implements Runnable {
+
+        final Lane mLane;
+        final Runnable mTask;
+        final long mQueuedTime = System.nanoTime();
+
+        LaneTask(Lane lane, Runnable task) {
+            mLane = lane;
+            mTask = task;
+        }
+
+        @Override
+        public void run() {
+            mQueueWait.get(mLane).record((System.nanoTime() - mQueuedTime) / 1000000);
+            Thread thread = Thread.currentThread();
+            thread.setPriority(mLane.mThreadPriority);
+            try {
+                mTask.run();
+            } finally {
+                thread.setPriority(Thread.NORM_PRIORITY);
+                onTaskFinished(mLane);
+            }
+        }
+
+        /**
+         * Cancel the task if it is a future, now that it will never run.
+         */
+        void discard() {
+            if (mTask instanceof Future) {
+                ((Future<?>) mTask).cancel(false);
+            }
+        }
+    }
+}
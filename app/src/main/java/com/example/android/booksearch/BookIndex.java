@@ -0,0 +1,311 @@
+package com.example.android.booksearch;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookPage;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * On-device inverted index over every book the app has fetched, used to show matching books
+ * while a search is still waiting on the network, or instead of it when there is no connection.
+ *
+ * Titles and author names are split into terms, which are lowercased and stripped of accents.
+ * Each term maps to a sorted posting list of int entries, one per document and field, so the
+ * index holds no objects per occurrence. Terms are kept sorted, so every query term matches as a
+ * prefix: "tolk" finds "tolkien". A book matches a query when every query term matches one of
+ * its terms; matches are ranked by how rare the matched terms are, whether they matched whole
+ * and whether they are in the title.
+ *
+ * Books are added incrementally, page by page, and the index is filled from the
+ * {@link BookStore} the first time it is used, so it covers searches of previous sessions too.
+ */
+public final class BookIndex {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = BookIndex.class.getSimpleName();
+
+    /** Bit of a posting entry telling that the term is in the title rather than the authors */
+    private static final int TITLE_FIELD = 1;
+
+    /** Weight of a term found in the title, relative to one found in an author name */
+    static final float TITLE_WEIGHT = 2f;
+
+    /** Weight of a query term equal to the indexed term, relative to a prefix of it */
+    static final float EXACT_MATCH_WEIGHT = 2f;
+
+    /** Marks, such as accents, left apart by the NFD normalization */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    /** Separators between terms: anything that is not a letter or a digit */
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /** Single instance of the index, shared by every {@link BookLoader} */
+    private static BookIndex sInstance;
+
+    /** Indexed books; the position of a book is its document number */
+    private final List<Book> mDocuments = new ArrayList<>();
+
+    /** Document number of every indexed book, by key */
+    private final Map<String, Integer> mDocumentsByKey = new HashMap<>();
+
+    /** Posting list of every term, sorted by term to answer prefix queries */
+    private final TreeMap<String, Postings> mTerms = new TreeMap<>();
+
+    /**
+     * Constructs an empty index. Outside of tests, use {@link #getInstance(Context)}.
+     */
+    BookIndex() {
+    }
+
+    /**
+     * Returns the single {@link BookIndex} instance, creating it and filling it with every book
+     * in the {@link BookStore} if needed. Must not be called on the main thread the first time.
+     *
+     * @param context any context, only used to open the store
+     */
+    public static synchronized BookIndex getInstance(Context context) {
+        if (sInstance == null) {
+            long startTime = System.nanoTime();
+            BookIndex index = new BookIndex();
+            index.addAll(BookStore.getInstance(context).getAllBooks());
+            Log.i(LOG_TAG, "getInstance(): indexed " + index.size() + " stored books in "
+                    + (System.nanoTime() - startTime) / 1000000 + " ms.");
+            sInstance = index;
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the amount of books indexed.
+     */
+    public synchronized int size() {
+        return mDocuments.size();
+    }
+
+    /**
+     * Returns the amount of distinct terms indexed.
+     */
+    public synchronized int getTermCount() {
+        return mTerms.size();
+    }
+
+    /**
+     * Adds books to the index. Books indexed already, with the same volume ID, are replaced.
+     *
+     * @param books books to add
+     */
+    public synchronized void addAll(Collection<Book> books) {
+        for (Book book : books) {
+            add(book);
+        }
+    }
+
+    /**
+     * Add a book to the index, or replace it if it was indexed already.
+     */
+    private void add(Book book) {
+        String key = BookStore.getBookKey(book);
+        Integer existing = mDocumentsByKey.get(key);
+        int document;
+        if (existing != null) {
+            // Postings left over from an older title or author are kept. Volumes rarely change,
+            // and removing them would mean scanning every posting list.
+            document = existing;
+            mDocuments.set(document, book);
+        } else {
+            document = mDocuments.size();
+            mDocuments.add(book);
+            mDocumentsByKey.put(key, document);
+        }
+
+        addTerms(document, book.getTitle(), TITLE_FIELD);
+        for (String author : book.getAuthors()) {
+            addTerms(document, author, 0);
+        }
+    }
+
+    /**
+     * Add a posting for every term of the given text.
+     */
+    private void addTerms(int document, String text, int field) {
+        for (String term : tokenize(text)) {
+            Postings postings = mTerms.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                mTerms.put(term, postings);
+            }
+            postings.add(document << 1 | field);
+        }
+    }
+
+    /**
+     * Returns the best ranked books matching every term of the query.
+     *
+     * @param query terms typed by the user
+     * @param limit maximum amount of books to return
+     * @return page with the best ranked books, in order, and the amount of books matching
+     */
+    public synchronized BookPage search(String query, int limit) {
+        String[] queryTerms = tokenize(query);
+        int documentCount = mDocuments.size();
+        if (queryTerms.length == 0 || documentCount == 0) {
+            return new BookPage(Collections.<Book>emptyList(), 0);
+        }
+
+        float[] scores = new float[documentCount];
+        int[] matchedTerms = new int[documentCount];
+        float[] termScores = new float[documentCount];
+
+        for (String queryTerm : queryTerms) {
+            Arrays.fill(termScores, 0f);
+
+            // Every indexed term starting with the query term is a match
+            SortedMap<String, Postings> matches =
+                    mTerms.subMap(queryTerm, queryTerm + Character.MAX_VALUE);
+            for (Map.Entry<String, Postings> match : matches.entrySet()) {
+                Postings postings = match.getValue();
+                float weight = (float) Math.log(1.0 + (double) documentCount / postings.size);
+                if (match.getKey().length() == queryTerm.length()) {
+                    weight *= EXACT_MATCH_WEIGHT;
+                }
+
+                for (int i = 0; i < postings.size; i++) {
+                    int entry = postings.entries[i];
+                    int document = entry >>> 1;
+                    float score = (entry & TITLE_FIELD) != 0 ? weight * TITLE_WEIGHT : weight;
+                    if (score > termScores[document]) {
+                        termScores[document] = score;
+                    }
+                }
+            }
+
+            for (int document = 0; document < documentCount; document++) {
+                if (termScores[document] > 0f) {
+                    scores[document] += termScores[document];
+                    matchedTerms[document]++;
+                }
+            }
+        }
+
+        // Keep the books matching every query term, best score first. Ties go to the most
+        // reviewed book, then to the one fetched first.
+        List<Integer> hits = new ArrayList<>();
+        for (int document = 0; document < documentCount; document++) {
+            if (matchedTerms[document] == queryTerms.length) {
+                hits.add(document);
+            }
+        }
+        Collections.sort(hits, new HitComparator(scores));
+
+        int count = Math.min(limit, hits.size());
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(mDocuments.get(hits.get(i)));
+        }
+        return new BookPage(books, hits.size());
+    }
+
+    /**
+     * Returns the normalized terms of a text: lowercased, without accents and split on anything
+     * that is not a letter or a digit.
+     *
+     * @param text text to split, may be null
+     * @return terms in order of appearance, possibly repeated
+     */
+    static String[] tokenize(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+        normalized = MARKS.matcher(normalized).replaceAll("").toLowerCase(Locale.ROOT);
+
+        List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(normalized)) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms.toArray(new String[terms.size()]);
+    }
+
+    /**
+     * Growable, sorted list of posting entries of a term, each entry being the document number
+     * shifted left by one, with the field in the lowest bit.
+     */
+    private static final class Postings {
+
+        /** Posting entries, sorted; only the first size are used */
+        int[] entries = new int[2];
+
+        /** Amount of entries used */
+        int size;
+
+        /**
+         * Add an entry, unless the list has it already. New books get the highest document
+         * number, so entries are almost always appended.
+         */
+        void add(int entry) {
+            if (size > 0 && entries[size - 1] >= entry) {
+                int position = Arrays.binarySearch(entries, 0, size, entry);
+                if (position >= 0) {
+                    return;
+                }
+                insert(-position - 1, entry);
+            } else {
+                insert(size, entry);
+            }
+        }
+
+        private void insert(int position, int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            System.arraycopy(entries, position, entries, position + 1, size - position);
+            entries[position] = entry;
+            size++;
+        }
+    }
+
+    /**
+     * Orders document numbers by descending score, then descending ratings count, then
+     * ascending document number.
+     */
+    private final class HitComparator implements Comparator<Integer> {
+
+        private final float[] mScores;
+
+        HitComparator(float[] scores) {
+            mScores = scores;
+        }
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            int byScore = Float.compare(mScores[b], mScores[a]);
+            if (byScore != 0) {
+                return byScore;
+            }
+            int byRatings = compareInts(mDocuments.get(b).getRatingsCount(),
+                    mDocuments.get(a).getRatingsCount());
+            return byRatings != 0 ? byRatings : compareInts(a, b);
+        }
+
+        private int compareInts(int a, int b) {
+            return a < b ? -1 : (a == b ? 0 : 1);
+        }
+    }
+}
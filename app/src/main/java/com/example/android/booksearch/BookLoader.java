@@ -1,25 +1,154 @@
 package com.example.android.booksearch;
 
-import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookJsonParser;
+import com.example.android.booksearch.core.BookPage;
+import com.example.android.booksearch.core.BookQueryResult;
+import com.example.android.booksearch.core.CancellationSignal;
+import com.example.android.booksearch.core.HttpRequest;
+import com.example.android.booksearch.core.OperationCanceledException;
+import com.example.android.booksearch.core.QueryUtils;
+import com.example.android.booksearch.core.RequestScheduler;
+import com.example.android.booksearch.core.SearchMetrics;
+import com.example.android.booksearch.core.TransportConfig;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Class that represents a custom AsyncTaskLoader for a Book object.
+ * Class that represents a custom loader for a Book object, run on the lanes of the
+ * {@link BookExecutor}.
+ *
+ * The loader works as a paged data source: the first load fetches the first page of results and
+ * every call to {@link #loadNextPage()} fetches the following one, until all the results
+ * reported by the server have been fetched. Each delivered result holds the response code and
+ * timing of the latest request, and a page with every book loaded so far for the query, without
+ * duplicate volumes.
+ *
+ * When a load is superseded, for example by a new query, the HTTP request and parsing of the
+ * page being loaded are cancelled as well.
+ *
+ * The first page is loaded stale-while-revalidate: the books stored in the {@link BookStore} for
+ * the same query, or else the books of the previous query refined for this one by the
+ * {@link QueryRefiner}, or else the matches in the {@link BookIndex}, are delivered at once and
+ * replaced when the fresh page arrives. Without a network connection the local books are
+ * delivered and marked stale; calling {@link #onContentChanged()} once the network is back
+ * revalidates them.
+ *
+ * Requests are prioritized for the {@link RequestScheduler}: the first page of a new query is
+ * interactive, revalidations are background requests, and pages fetched ahead of the user,
+ * including the later pages fetched at once, are prefetches that may be shed. A shed page is
+ * not merged and is requested again later, like any other failed page. Loads run in the
+ * matching lane of the {@link BookExecutor}, so a new query never waits behind pages and
+ * revalidations of other queries.
+ *
+ * When a new query has nothing to show yet, its first page is delivered progressively: batches
+ * of books are delivered as they are parsed from the response stream, so the first rows show up
+ * before the last byte arrives. The time until the first rows and until the complete page are
+ * recorded in the {@link SearchMetrics}.
  */
 
-public class BookLoader extends AsyncTaskLoader<List<Book>> {
+public class BookLoader extends LaneTaskLoader<BookQueryResult> {
 
     /** Tag for the log messages */
     private static final String LOG_TAG = BookLoader.class.getSimpleName();
 
+    /** Amount of books requested per page. The Google Books API allows up to 40. */
+    public static final int PAGE_SIZE = 20;
+
+    /** Amount of books requested per page when fetching several pages at once; the API maximum */
+    static final int BULK_PAGE_SIZE = 40;
+
+    /**
+     * Maximum amount of pages fetched at the same time, as many as connections kept alive by
+     * the transport so that every request can reuse one
+     */
+    private static final int MAX_CONCURRENT_PAGES = TransportConfig.DEFAULT.getMaxIdleConnections();
+
+    /** Executor running the page requests of fetches of several pages at once */
+    private static final ExecutorService sPageExecutor =
+            Executors.newFixedThreadPool(MAX_CONCURRENT_PAGES);
+
+    /** Amount of books delivered at a time while the first page streams in; about a screenful */
+    private static final int PROGRESSIVE_BATCH_SIZE = 5;
+
+    /** Maximum amount of books saved with the activity state; a whole amount of pages */
+    private static final int MAX_SAVED_BOOKS = PAGE_SIZE * 10;
+
+    /** Keys to add the loader state to Bundle when saving state */
+    private static final String STATE_BOOKS = "books";
+    private static final String STATE_NEXT_START_INDEX = "nextStartIndex";
+    private static final String STATE_TOTAL_ITEMS = "totalItems";
+    private static final String STATE_IS_STALE = "isStale";
+
     /** Query url */
     private String mUrl;
 
+    /**
+     * Books of the previous query refined for this one and shown already, or null. Dropped once
+     * the first page is fetched. Only accessed on the loader thread.
+     */
+    private BookPage mRefinedPage;
+
+    /** Amount of books to load at once the first time, fetching several pages at the same time */
+    private final int mFirstLoadResults;
+
+    /** Lock guarding the paging state below, which is read and written from the loader thread */
+    private final Object mLock = new Object();
+
+    /** Every book loaded so far for this query, in the order returned by the server */
+    private final List<Book> mBooks = new ArrayList<>();
+
+    /** Volume IDs of the books loaded so far, used to drop duplicates across pages */
+    private final Set<String> mBookIds = new HashSet<>();
+
+    /** Position of the first result of the next page to fetch */
+    private int mNextStartIndex;
+
+    /** Total amount of results for the query as reported by the server, or -1 if unknown */
+    private int mTotalItems = -1;
+
+    /** Whether a page is being loaded right now. Only accessed on the main thread. */
+    private boolean mIsLoadingPage;
+
+    /** Last result delivered, kept to deliver it again when the loader is restarted */
+    private BookQueryResult mResult;
+
+    /** Whether the books loaded were read locally and must be revalidated */
+    private boolean mIsStale;
+
+    /** Signal used to cancel the page being loaded, or null if there is none. Guarded by this. */
+    private CancellationSignal mCancellationSignal;
+
+    /** Handler used to deliver results before loading has finished */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Time the first load of a new query started, from System.nanoTime(). Main thread only. */
+    private long mSearchStartNanos;
+
+    /** Whether the first books of a new query are yet to be delivered. Main thread only. */
+    private boolean mIsFirstRowPending;
+
+    /** Whether the first page of a new query is yet to be delivered. Main thread only. */
+    private boolean mIsCompletePending;
+
     /**
      * Constructs a new {@link BookLoader}.
      *
@@ -27,27 +156,604 @@ public class BookLoader extends AsyncTaskLoader<List<Book>> {
      * @param url to load data from
      */
     public BookLoader(Context context, String url) {
+        this(context, url, null, PAGE_SIZE, null);
+    }
+
+    /**
+     * Constructs a new {@link BookLoader} that starts from the books saved by
+     * {@link #saveState(Bundle)}, if any, instead of loading them again.
+     *
+     * @param context of the activity
+     * @param url to load data from
+     * @param savedState state saved for the same url, or null
+     * @param firstLoadResults amount of books to load the first time. Above {@link #PAGE_SIZE},
+     *                         several pages are fetched at the same time.
+     * @param refinedPage books of the previous query that match this one, already shown while
+     *                    this one loads, or null
+     */
+    public BookLoader(Context context, String url, Bundle savedState, int firstLoadResults,
+                      BookPage refinedPage) {
         super(context);
         mUrl = url;
+        mFirstLoadResults = firstLoadResults;
+        mRefinedPage = refinedPage;
+        if (savedState != null) {
+            restoreState(savedState);
+        }
         Log.i(LOG_TAG, "BookLoader constructor called: new Loader created.");
     }
 
+    /**
+     * Save the books loaded so far and the paging state, so that a loader created after the
+     * process is killed can continue where this one was. At most {@link #MAX_SAVED_BOOKS} books
+     * are saved, to keep the saved state small.
+     *
+     * @param outState bundle to save the state to
+     */
+    public void saveState(Bundle outState) {
+        synchronized (mLock) {
+            if (mBooks.isEmpty()) {
+                return;
+            }
+
+            // If there are too many books, save whole pages only, and page from there later
+            int count = mBooks.size();
+            int nextStartIndex = mNextStartIndex;
+            if (count > MAX_SAVED_BOOKS) {
+                count = MAX_SAVED_BOOKS;
+                nextStartIndex = MAX_SAVED_BOOKS;
+            }
+
+            outState.putParcelableArrayList(STATE_BOOKS,
+                    ParcelableBook.wrap(mBooks.subList(0, count)));
+            outState.putInt(STATE_NEXT_START_INDEX, nextStartIndex);
+            outState.putInt(STATE_TOTAL_ITEMS, mTotalItems);
+            outState.putBoolean(STATE_IS_STALE, mIsStale);
+        }
+    }
+
+    /**
+     * Restore the books and paging state saved by {@link #saveState(Bundle)}.
+     */
+    private void restoreState(Bundle savedState) {
+        savedState.setClassLoader(ParcelableBook.class.getClassLoader());
+        ArrayList<ParcelableBook> books = savedState.getParcelableArrayList(STATE_BOOKS);
+        if (books == null) {
+            return;
+        }
+
+        synchronized (mLock) {
+            for (Book book : ParcelableBook.unwrap(books)) {
+                addBook(book);
+            }
+            mNextStartIndex = savedState.getInt(STATE_NEXT_START_INDEX);
+            mTotalItems = savedState.getInt(STATE_TOTAL_ITEMS);
+            mIsStale = savedState.getBoolean(STATE_IS_STALE);
+            mResult = new BookQueryResult(HttpURLConnection.HTTP_OK,
+                    new BookPage(mBooks, mTotalItems), 0, null,
+                    BookQueryResult.Source.SAVED_STATE);
+        }
+        Log.i(LOG_TAG, "restoreState(): restored " + books.size() + " books.");
+    }
+
+    /**
+     * Returns the query url this loader loads data from.
+     */
+    public String getUrl() {
+        return mUrl;
+    }
+
     @Override
     protected void onStartLoading() {
+        // If there is already a result, deliver it right away instead of fetching everything
+        // again, which would also lose the pages loaded so far. Delivering it again doesn't
+        // mean a load finished, so it skips deliverResult().
+        if (mResult != null) {
+            super.deliverResult(mResult);
+        }
+        if (mResult == null || takeContentChanged()) {
+            forceLoad();
+            Log.i(LOG_TAG, "onStartLoading() --> forceLoad()");
+        }
+    }
+
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        mIsLoadingPage = true;
+
+        // Nothing was delivered yet, so this is a new search the user is waiting for
+        if (mResult == null && !TextUtils.isEmpty(mUrl)) {
+            mSearchStartNanos = System.nanoTime();
+            mIsFirstRowPending = true;
+            mIsCompletePending = true;
+        }
+    }
+
+    /**
+     * Deliver the result of a load that finished. Results delivered while loading, or delivered
+     * again when the loader restarts, don't go through here.
+     */
+    @Override
+    public void deliverResult(BookQueryResult result) {
+        recordSearchTime(result, true);
+        mIsLoadingPage = false;
+        mResult = result;
+        super.deliverResult(result);
+    }
+
+    /**
+     * Called when a load was cancelled, or discarded from a full lane of the
+     * {@link BookExecutor}, instead of delivered. Unless a newer load is pending, no page is
+     * loading any more, so the next page can be requested again.
+     */
+    @Override
+    public void onCanceled(BookQueryResult data) {
+        super.onCanceled(data);
+        if (!isLoadPending()) {
+            mIsLoadingPage = false;
+        }
+    }
+
+    /**
+     * Record the time until the first books of a new search are delivered, and until its first
+     * page is delivered complete. Called on the main thread with every result delivered.
+     *
+     * @param result result being delivered
+     * @param isComplete whether loading the page has finished
+     */
+    private void recordSearchTime(BookQueryResult result, boolean isComplete) {
+        boolean hasBooks = result.getPage() != null && !result.getPage().getBooks().isEmpty();
+        long elapsedNanos = System.nanoTime() - mSearchStartNanos;
+        SearchMetrics metrics = SearchMetrics.getInstance();
+
+        if (mIsFirstRowPending && hasBooks) {
+            metrics.recordDuration(SearchMetrics.Stage.FIRST_ROW, elapsedNanos);
+            mIsFirstRowPending = false;
+        }
+        if (mIsCompletePending && isComplete) {
+            // A search that found nothing has no rows to time
+            if (hasBooks) {
+                metrics.recordDuration(SearchMetrics.Stage.COMPLETE, elapsedNanos);
+            }
+            mIsFirstRowPending = false;
+            mIsCompletePending = false;
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        mResult = null;
+    }
+
+    /**
+     * Start loading the next page of results in the background, if there is one and no page is
+     * being loaded already.
+     *
+     * @return true if a new page started loading
+     */
+    public boolean loadNextPage() {
+        if (mIsLoadingPage || !hasMorePages()) {
+            return false;
+        }
+        Log.i(LOG_TAG, "loadNextPage(): prefetching next page.");
         forceLoad();
-        Log.i(LOG_TAG, "onStartLoading() --> forceLoad()");
+        return true;
+    }
+
+    /**
+     * Returns whether a page is still loading. Results delivered while the first page streams
+     * in, or while local books are shown as it loads, are delivered with this still true.
+     */
+    public boolean isLoadingPage() {
+        return mIsLoadingPage;
+    }
+
+    /**
+     * Returns whether there are results left to fetch for this query.
+     */
+    public boolean hasMorePages() {
+        if (TextUtils.isEmpty(mUrl)) {
+            return false;
+        }
+        synchronized (mLock) {
+            return mTotalItems < 0 || mNextStartIndex < mTotalItems;
+        }
+    }
+
+    /**
+     * Returns whether the books delivered last were read locally, from the {@link BookStore} or
+     * the {@link BookIndex}, and still have to be revalidated against the network.
+     */
+    public boolean isStale() {
+        synchronized (mLock) {
+            return mIsStale;
+        }
+    }
+
+    /**
+     * Returns whether there is a network connection available to fetch data with.
+     *
+     * @param context any context
+     */
+    public static boolean isNetworkAvailable(Context context) {
+        // Get a reference to the ConnectivityManager to check state of network connectivity
+        ConnectivityManager cm =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        // Get details on the currently active default data network
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+
+        // Get connection status
+        return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+    }
+
+    @Override
+    protected BookExecutor.Lane getLane() {
+        synchronized (mLock) {
+            if (mIsStale) {
+                return BookExecutor.Lane.REFRESH;
+            }
+            return mBooks.isEmpty()
+                    ? BookExecutor.Lane.INTERACTIVE : BookExecutor.Lane.PAGE_PREFETCH;
+        }
     }
 
     @Override
-    public List<Book> loadInBackground() {
-        Log.i(LOG_TAG, "loadInBackground(): loading data in background");
+    public BookQueryResult loadInBackground() {
+        Log.i(LOG_TAG, "loadInBackground(): loading data in background, "
+                + BookExecutor.getInstance());
 
-        // If the query url is empty, return an empty array list. Otherwise, fetch data
-        // using this url
+        // If the query url is empty, return a result with no books and no response. Otherwise,
+        // fetch the next page of data using this url
         if (TextUtils.isEmpty(mUrl)) {
-            return new ArrayList<Book>();
+            return new BookQueryResult(BookQueryResult.NO_RESPONSE, null, 0, null);
+        }
+
+        // The first page is loaded again from the start when the books shown are stale
+        boolean isFirstPage;
+        boolean isRevalidation;
+        int startIndex;
+        synchronized (mLock) {
+            isRevalidation = mIsStale;
+            isFirstPage = mBooks.isEmpty() || mIsStale;
+            startIndex = mNextStartIndex;
+        }
+
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+            mCancellationSignal = new CancellationSignal();
+        }
+
+        try {
+            return isFirstPage
+                    ? loadFirstPage(isRevalidation, mCancellationSignal)
+                    : loadFollowingPage(startIndex, mCancellationSignal);
+        } finally {
+            synchronized (this) {
+                mCancellationSignal = null;
+            }
+        }
+    }
+
+    /**
+     * Load the first page of results, stale-while-revalidate: the books stored for this query
+     * in the {@link BookStore}, or else the best matches in the {@link BookIndex} of every book
+     * fetched before, are shown right away, then replaced by fresh ones from the network when
+     * there is a connection. Without one, the first page cached in the {@link BookCache}, or
+     * else the local books, are the result.
+     */
+    private BookQueryResult loadFirstPage(boolean isRevalidation,
+                                          CancellationSignal cancellationSignal) {
+        BookQueryResult localResult = loadLocalPage();
+
+        // Show the local books while the fresh ones load. When revalidating, they are on screen
+        // already.
+        if (localResult != null && !isRevalidation) {
+            Log.i(LOG_TAG, "loadFirstPage(): showing local books: " + localResult);
+            publishResult(localResult);
+        }
+
+        // With nothing on screen, show the fresh books as they stream in
+        ProgressivePublisher publisher = localResult == null && !isRevalidation
+                ? new ProgressivePublisher() : null;
+
+        BookQueryResult result;
+        int nextStartIndex = PAGE_SIZE;
+        if (!isNetworkAvailable(getContext())) {
+            // A page cached for this query is as fresh as the one the network path would use
+            int pageSize = mFirstLoadResults > PAGE_SIZE ? BULK_PAGE_SIZE : PAGE_SIZE;
+            result = loadCachedPage(0, pageSize);
+            if (result != null) {
+                nextStartIndex = pageSize;
+            } else {
+                result = new BookQueryResult(BookQueryResult.NO_RESPONSE, null, 0,
+                        new IOException("No network connection"));
+            }
+        } else if (mFirstLoadResults > PAGE_SIZE) {
+            PageFanOut fanOut = new PageFanOut(sPageExecutor, MAX_CONCURRENT_PAGES, BULK_PAGE_SIZE);
+            result = fetchPagesAtOnce(fanOut, isRevalidation, publisher, cancellationSignal);
+            nextStartIndex = fanOut.getNextStartIndex();
         } else {
-            return QueryUtils.fetchBookData(mUrl);
+            result = loadPage(0, PAGE_SIZE, getFirstPagePriority(isRevalidation), publisher,
+                    cancellationSignal);
+        }
+
+        BookPage allBooks;
+        synchronized (mLock) {
+            mBooks.clear();
+            mBookIds.clear();
+            mNextStartIndex = 0;
+            mTotalItems = -1;
+
+            if (result.isSuccessful()) {
+                mergePage(result.getPage(), nextStartIndex);
+                mIsStale = false;
+                mRefinedPage = null;
+            } else if (localResult != null) {
+                // Keep showing the local books, and revalidate once the network is back
+                BookPage localPage = localResult.getPage();
+                for (Book book : localPage.getBooks()) {
+                    addBook(book);
+                }
+                mNextStartIndex = localPage.getBooks().size();
+
+                // Books found in the index or refined don't line up with the server's pages, so
+                // there is nothing more to page through until revalidated
+                mTotalItems = localResult.getSource() == BookQueryResult.Source.STORE
+                        ? localPage.getTotalItems() : mNextStartIndex;
+                mIsStale = true;
+            }
+            allBooks = new BookPage(mBooks, mTotalItems);
+        }
+
+        if (result.isSuccessful()) {
+            BookStore.getInstance(getContext()).putResults(mUrl, allBooks);
+            return new BookQueryResult(result.getResponseCode(), allBooks,
+                    result.getElapsedMillis(), null, result.getSource());
+        } else if (localResult != null) {
+            // A new result, since the local one may have been delivered already and the
+            // LoaderManager doesn't deliver the same result twice
+            return new BookQueryResult(localResult.getResponseCode(), localResult.getPage(),
+                    localResult.getElapsedMillis(), null, localResult.getSource());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the priority of the request for the first page: interactive for a new query, or
+     * background when revalidating books already shown.
+     */
+    private static HttpRequest.Priority getFirstPagePriority(boolean isRevalidation) {
+        return isRevalidation ? HttpRequest.Priority.BACKGROUND : HttpRequest.Priority.INTERACTIVE;
+    }
+
+    /**
+     * Returns the books stored for this query in the {@link BookStore}, or else the refined books
+     * of the previous query, or else the best matches for its terms in the {@link BookIndex}, or
+     * null if there are none.
+     */
+    private BookQueryResult loadLocalPage() {
+        long startTime = SystemClock.elapsedRealtime();
+        BookPage storedPage = BookStore.getInstance(getContext()).getResults(mUrl);
+        if (storedPage != null) {
+            return new BookQueryResult(HttpURLConnection.HTTP_OK, storedPage,
+                    SystemClock.elapsedRealtime() - startTime, null, BookQueryResult.Source.STORE);
+        }
+
+        // Already on screen, and ranked from the server's own results for a query like this one
+        if (mRefinedPage != null) {
+            return new BookQueryResult(HttpURLConnection.HTTP_OK, mRefinedPage, 0, null,
+                    BookQueryResult.Source.REFINED);
+        }
+
+        String query = Uri.parse(mUrl).getQueryParameter("q");
+        BookPage indexPage = BookIndex.getInstance(getContext()).search(query, PAGE_SIZE);
+        if (!indexPage.getBooks().isEmpty()) {
+            return new BookQueryResult(HttpURLConnection.HTTP_OK, indexPage,
+                    SystemClock.elapsedRealtime() - startTime, null, BookQueryResult.Source.INDEX);
+        }
+        return null;
+    }
+
+    /**
+     * Load the page of results starting at the given index and merge it with the books loaded
+     * so far.
+     */
+    private BookQueryResult loadFollowingPage(int startIndex,
+                                              CancellationSignal cancellationSignal) {
+        // Following pages are loaded ahead of the user, as they scroll towards them
+        BookQueryResult result = loadPage(startIndex, PAGE_SIZE, HttpRequest.Priority.PREFETCH,
+                null, cancellationSignal);
+
+        BookPage allBooks;
+        boolean isMerged = false;
+        synchronized (mLock) {
+            // If the page failed, keep the books loaded so far; the failed page will be requested
+            // again on the next scroll. Otherwise merge the page, if no other load merged it in
+            // the meantime.
+            if (result.isSuccessful() && startIndex == mNextStartIndex) {
+                mergePage(result.getPage(), startIndex + PAGE_SIZE);
+                isMerged = true;
+            }
+            allBooks = new BookPage(mBooks, mTotalItems);
+        }
+
+        // Store every book loaded so far, so they are all there the next time
+        if (isMerged) {
+            BookStore.getInstance(getContext()).putResults(mUrl, allBooks);
+        }
+
+        // Deliver the status of this request together with every book loaded so far
+        return new BookQueryResult(result.getResponseCode(), allBooks,
+                result.getElapsedMillis(), result.getError(), result.getSource());
+    }
+
+    /**
+     * Fetch the first pages of results at the same time, so that as many books as were asked for
+     * load in about the time of a single page. Books are delivered as soon as the first pages
+     * are merged. Only the first page has the priority of a first page, and is delivered
+     * progressively by the given publisher, if any; the rest are prefetches.
+     */
+    private BookQueryResult fetchPagesAtOnce(PageFanOut fanOut, boolean isRevalidation,
+                                             final ProgressivePublisher publisher,
+                                             CancellationSignal cancellationSignal) {
+        final HttpRequest.Priority firstPagePriority = getFirstPagePriority(isRevalidation);
+        int pageCount = (mFirstLoadResults + BULK_PAGE_SIZE - 1) / BULK_PAGE_SIZE;
+        Log.i(LOG_TAG, "fetchPagesAtOnce(): fetching " + pageCount + " pages at once.");
+
+        final long startTime = SystemClock.elapsedRealtime();
+        BookQueryResult result = fanOut.fetch(new PageFanOut.PageSource() {
+            @Override
+            public BookQueryResult loadPage(int startIndex, int pageSize,
+                                            CancellationSignal cancellationSignal) {
+                if (startIndex == 0) {
+                    return BookLoader.this.loadPage(startIndex, pageSize, firstPagePriority,
+                            publisher, cancellationSignal);
+                }
+                return BookLoader.this.loadPage(startIndex, pageSize,
+                        HttpRequest.Priority.PREFETCH, null, cancellationSignal);
+            }
+        }, pageCount, cancellationSignal, new PageFanOut.Listener() {
+            @Override
+            public void onPagesMerged(BookPage booksSoFar) {
+                publishResult(new BookQueryResult(HttpURLConnection.HTTP_OK, booksSoFar,
+                        SystemClock.elapsedRealtime() - startTime, null));
+            }
+        });
+
+        Log.i(LOG_TAG, "fetchPagesAtOnce(): " + result);
+        return result;
+    }
+
+    /**
+     * Append the books of a page that weren't loaded already and continue paging from the given
+     * position. Must be called holding mLock.
+     */
+    private void mergePage(BookPage page, int nextStartIndex) {
+        for (Book book : page.getBooks()) {
+            addBook(book);
+        }
+        mNextStartIndex = nextStartIndex;
+
+        // Stop when the server runs out of results, even if it reported more before
+        mTotalItems = page.getBooks().isEmpty() ? mNextStartIndex : page.getTotalItems();
+    }
+
+    /**
+     * Append a book unless a book with the same volume ID was loaded already. Must be called
+     * holding mLock.
+     */
+    private void addBook(Book book) {
+        // Books without a volume ID can't be told apart, so always keep them
+        if (book.getId() == null || mBookIds.add(book.getId())) {
+            mBooks.add(book);
+        }
+    }
+
+    /**
+     * Deliver a result on the main thread while loadInBackground() is still running.
+     */
+    private void publishResult(final BookQueryResult result) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isStarted() && !isAbandoned()) {
+                    // Unlike deliverResult(), keep the page marked as loading
+                    recordSearchTime(result, false);
+                    mResult = result;
+                    BookLoader.super.deliverResult(result);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+
+        synchronized (this) {
+            if (mCancellationSignal != null) {
+                mCancellationSignal.cancel();
+            }
+        }
+    }
+
+    /**
+     * Returns the result of loading the page of books starting at the given index, from the
+     * cache if possible or else from the network with the given priority. Books fetched from
+     * the network are handed to the given publisher, if any, as they stream in. Safe to call on
+     * several threads at once.
+     */
+    private BookQueryResult loadPage(int startIndex, int pageSize, HttpRequest.Priority priority,
+                                     ProgressivePublisher publisher,
+                                     CancellationSignal cancellationSignal) {
+        BookCache cache = BookCache.getInstance(getContext());
+        BookQueryResult result = loadCachedPage(startIndex, pageSize);
+        if (result == null) {
+            String pageUrl = QueryUtils.buildPageUrl(mUrl, startIndex, pageSize);
+            result = QueryUtils.fetchBookData(pageUrl, priority, cancellationSignal,
+                    PROGRESSIVE_BATCH_SIZE, publisher);
+
+            // Only successful responses are cached
+            if (result.isSuccessful()) {
+                cache.put(pageUrl, result.getPage());
+            }
+        }
+
+        // Every book fetched becomes searchable locally
+        if (result.isSuccessful()) {
+            BookIndex.getInstance(getContext()).addAll(result.getPage().getBooks());
+        }
+
+        Log.i(LOG_TAG, "loadPage(): startIndex " + startIndex + ", cache " + cache.getStats());
+        return result;
+    }
+
+    /**
+     * Returns the page of books starting at the given index from the {@link BookCache}, or null
+     * if it isn't cached.
+     */
+    private BookQueryResult loadCachedPage(int startIndex, int pageSize) {
+        long startTime = SystemClock.elapsedRealtime();
+        BookPage cachedPage = BookCache.getInstance(getContext())
+                .get(QueryUtils.buildPageUrl(mUrl, startIndex, pageSize));
+        if (cachedPage == null) {
+            return null;
+        }
+        return new BookQueryResult(HttpURLConnection.HTTP_OK, cachedPage,
+                SystemClock.elapsedRealtime() - startTime, null, BookQueryResult.Source.CACHE);
+    }
+
+    /**
+     * Delivers the books of the first page of a new query in batches, as they are parsed, while
+     * the rest of the page is still streaming in. Every batch is delivered together with the
+     * books of the batches before it, without duplicate volumes.
+     */
+    private final class ProgressivePublisher implements BookJsonParser.BatchListener {
+
+        /** Books parsed so far */
+        private final List<Book> mBooksSoFar = new ArrayList<>();
+
+        /** Volume IDs of the books parsed so far */
+        private final Set<String> mIdsSoFar = new HashSet<>();
+
+        /** Time the page started loading, from SystemClock.elapsedRealtime() */
+        private final long mStartTime = SystemClock.elapsedRealtime();
+
+        @Override
+        public void onBatchParsed(List<Book> batch) {
+            for (Book book : batch) {
+                if (book.getId() == null || mIdsSoFar.add(book.getId())) {
+                    mBooksSoFar.add(book);
+                }
+            }
+            publishResult(new BookQueryResult(HttpURLConnection.HTTP_OK,
+                    new BookPage(mBooksSoFar, -1),
+                    SystemClock.elapsedRealtime() - mStartTime, null));
         }
     }
 }
@@ -1,40 +1,66 @@
 package com.example.android.booksearch;
 
 import android.app.LoaderManager;
+import android.app.SearchManager;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.Loader;
+import android.database.Cursor;
 import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.widget.EditText;
 import android.widget.ProgressBar;
 import android.widget.SearchView;
+import android.widget.SimpleCursorAdapter;
 import android.widget.TextView;
 
-import java.util.ArrayList;
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookFilter;
+import com.example.android.booksearch.core.BookPage;
+import com.example.android.booksearch.core.BookQueryResult;
+import com.example.android.booksearch.core.QueryUtils;
+import com.example.android.booksearch.core.RequestScheduler;
+import com.example.android.booksearch.core.RequestShedException;
+import com.example.android.booksearch.core.SearchMetrics;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-public class BookSearchActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Book>> {
+public class BookSearchActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<BookQueryResult> {
 
     /** Tag for the log messages */
     private static final String LOG_TAG = BookSearchActivity.class.getName();
 
-    /** Base url for Google Books API */
-    private static final String GOOGLE_BOOKS_BASE_URL = "https://www.googleapis.com/books/v1/volumes?q=";
+    /** Argument of dumpsys that exports the search metrics as CSV */
+    private static final String DUMP_METRICS_CSV = "metrics-csv";
 
     /** The complete query url for the current query */
     private String queryUrl;
 
-    /** BookAdapter for list view of books */
+    /** BookAdapter for the list of books */
     private BookAdapter mAdapter;
 
-    /** Text view for when list view of books is empty */
+    /** Layout manager of the list of books */
+    private LinearLayoutManager mLayoutManager;
+
+    /** Text view for when the list of books is empty */
     private TextView mEmptyTextView;
 
     /** Circular progress indicator to show when fetching data */
@@ -43,6 +69,9 @@ public class BookSearchActivity extends AppCompatActivity implements LoaderManag
     /** Integer Id for Loader */
     private static final int BOOK_LOADER_ID = 0;
 
+    /** Start fetching the next page when the user gets this close to the end of the list */
+    private static final int PREFETCH_DISTANCE = BookLoader.PAGE_SIZE / 2;
+
     /** Boolean flag to tell whether this is the first time this Activity is being created.
      * If this is true, the text displayed won't change to "No books found", since the user
      * won't have actually done any queries at that moment.
@@ -52,6 +81,86 @@ public class BookSearchActivity extends AppCompatActivity implements LoaderManag
     /** Key to add boolean flag to Bundle when saving state */
     private static final String IS_FIRST_LOAD = "isFirstLoad";
 
+    /** Key to add the current query url to Bundle when saving state */
+    private static final String QUERY_URL = "queryUrl";
+
+    /** Key to add the amount of books to load right away to the loader arguments */
+    private static final String FIRST_LOAD_RESULTS = "firstLoadResults";
+
+    /** Amount of books loaded right away, in pages fetched at once, for submitted searches */
+    private int mSubmittedSearchResults;
+
+    /** Keys to add the order and filters of the books to Bundle when saving state */
+    private static final String SORT_KEY = "sortKey";
+    private static final String MIN_RATING = "minRating";
+    private static final String AUTHOR = "author";
+    private static final String LIMIT = "limit";
+
+    /** Key to add the books loaded and paging state to Bundle when saving state */
+    private static final String LOADER_STATE = "loaderState";
+
+    /** State saved by the loader before the activity was recreated, until a loader uses it */
+    private Bundle mLoaderState;
+
+    /** Books of the previous query refined for a new one, until its loader uses them */
+    private BookPage mRefinedPage;
+
+    /** Handler used to delay search-as-you-type queries until typing settles */
+    private final Handler mSearchHandler = new Handler();
+
+    /** Latest query text typed by the user, searched once typing settles */
+    private String mPendingQuery;
+
+    /** Time, in milliseconds, that typing has to pause before searching */
+    private int mSearchDebounceMillis;
+
+    /** Minimum amount of characters needed before searching as the user types */
+    private int mSearchMinQueryLength;
+
+    /** Books loaded for the current query, sorted and filtered as the user chose */
+    private FilteredBooks mFilteredBooks;
+
+    /** Minimum average rating of the books kept by the rating filter */
+    private int mFilterMinRating;
+
+    /** Amount of best books kept by the top filter */
+    private int mFilterTopCount;
+
+    /** Past searches, suggested as the user types */
+    private SearchHistory mSearchHistory;
+
+    /** Adapter of the suggestions shown below the search view */
+    private SimpleCursorAdapter mSuggestionsAdapter;
+
+    /** Maximum amount of past searches suggested at once */
+    private int mSearchSuggestionCount;
+
+    /**
+     * Revalidates the books shown once the network connection is back, if they were read from
+     * the {@link BookStore} or {@link BookIndex} while offline.
+     */
+    private final BroadcastReceiver mConnectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Loader<BookQueryResult> loader = getLoaderManager().getLoader(BOOK_LOADER_ID);
+            if (loader != null && ((BookLoader) loader).isStale()
+                    && BookLoader.isNetworkAvailable(context)) {
+                Log.i(LOG_TAG, "Connection is back, revalidating stored books.");
+                loader.onContentChanged();
+            }
+        }
+    };
+
+    /** Searches for the latest typed query, unless it is the query already being shown */
+    private final Runnable mDebouncedSearch = new Runnable() {
+        @Override
+        public void run() {
+            if (!QueryUtils.buildQueryUrl(mPendingQuery).equals(queryUrl)) {
+                startSearch(mPendingQuery, BookLoader.PAGE_SIZE);
+            }
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -66,137 +175,403 @@ public class BookSearchActivity extends AppCompatActivity implements LoaderManag
             // Restore value of flag from saved state.
             // Use string key to retrieve previously saved value and save it in desired variable.
             isFirstLoad = savedInstanceState.getBoolean(IS_FIRST_LOAD);
+            queryUrl = savedInstanceState.getString(QUERY_URL);
+
+            // Books loaded before the process was killed, if it was, to show them again without
+            // loading them again
+            mLoaderState = savedInstanceState.getBundle(LOADER_STATE);
         }
 
         Log.i(LOG_TAG, "isFirstLoad after Bundle: " + isFirstLoad);
 
+        // Read search-as-you-type configuration
+        mSearchDebounceMillis = getResources().getInteger(R.integer.search_debounce_millis);
+        mSearchMinQueryLength = getResources().getInteger(R.integer.search_min_query_length);
+        mSubmittedSearchResults = getResources().getInteger(R.integer.submitted_search_results);
+
         // Find progress bar
         mProgressIndicator = (ProgressBar) findViewById(R.id.progress_indicator);
 
         // Set visibility to gone while the user launches the app and types a query
         mProgressIndicator.setVisibility(View.GONE);
 
-        // Find a reference to the {@link ListView} in the layout
-        ListView booksListView = (ListView) findViewById(R.id.list);
+        // Find a reference to the {@link RecyclerView} in the layout
+        RecyclerView booksRecyclerView = (RecyclerView) findViewById(R.id.list);
+        mLayoutManager = new LinearLayoutManager(this);
+        booksRecyclerView.setLayoutManager(mLayoutManager);
 
-        // Create a new {@link ArrayAdapter} of books
-        mAdapter = new BookAdapter(this, new ArrayList<Book>());
+        // The list fills the screen whatever books it shows, so changes to the books don't need
+        // to lay out the whole screen again
+        booksRecyclerView.setHasFixedSize(true);
 
-        // Set the adapter on the {@link ListView}
+        // Create a new {@link BookAdapter} of books. Set a click listener for a book clicked and
+        // make it open the link that shows complete information on this book.
+        mAdapter = new BookAdapter(this, new BookAdapter.OnBookClickListener() {
+            @Override
+            public void onBookClick(Book book) {
+                // Convert the String URL into a URI object (to pass into the Intent constructor)
+                Uri bookUri = Uri.parse(book.getUrl());
+
+                // Create a new intent to view the book URI
+                Intent websiteIntent = new Intent(Intent.ACTION_VIEW, bookUri);
+
+                //Check if activity can be started, if so, start it
+                if (websiteIntent.resolveActivity(getPackageManager()) != null) {
+                    startActivity(websiteIntent);
+                }
+            }
+        });
+
+        // Set the adapter on the {@link RecyclerView}
         // so the list can be populated in the user interface
-        booksListView.setAdapter(mAdapter);
+        booksRecyclerView.setAdapter(mAdapter);
 
-        // Find a reference to the text view to use when the list view is empty
+        // Find a reference to the text view to use when the list is empty
         mEmptyTextView = (TextView) findViewById(R.id.empty_text_view);
 
-        booksListView.setEmptyView(mEmptyTextView);
-
         mEmptyTextView.setText(R.string.how_to);
 
-        // Set a click listener for an item clicked and make it open the link tht shows complete
-        // information on this book
-        booksListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Show the empty text view only while there are no books in the list, since
+        // RecyclerView has no empty view of its own
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                // Find the current book that was clicked on
-                Book currentBook = mAdapter.getItem(position);
+            public void onChanged() {
+                updateEmptyView();
+            }
 
-                // Convert the String URL into a URI object (to pass into the Intent constructor)
-                Uri bookUri = Uri.parse(currentBook.getUrl());
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
 
-                // Create a new intent to view the book URI
-                Intent websiteIntent = new Intent(Intent.ACTION_VIEW, bookUri);
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
 
-                //Check if activity can be started, if so, start it
-                if (websiteIntent.resolveActivity(getPackageManager()) != null) {
-                    startActivity(websiteIntent);
+        // Show the books loaded sorted and filtered as the user chose. Changing the order or the
+        // filters sorts the books loaded again in the background, without loading them again.
+        mFilterMinRating = getResources().getInteger(R.integer.filter_min_rating);
+        mFilterTopCount = getResources().getInteger(R.integer.filter_top_count);
+        mFilteredBooks = new FilteredBooks(new FilteredBooks.Listener() {
+            @Override
+            public void onBooksFiltered(List<Book> books, int loadedCount) {
+                if (books.isEmpty()) {
+                    mAdapter.clear();
+                    if (loadedCount > 0) {
+                        mEmptyTextView.setText(
+                                getString(R.string.no_matching_books, loadedCount));
+                    }
+                } else {
+                    mAdapter.setBooks(books);
+                    mAdapter.prefetchThumbnails(mLayoutManager.findLastVisibleItemPosition());
                 }
             }
         });
+        if (savedInstanceState != null && savedInstanceState.containsKey(SORT_KEY)) {
+            mFilteredBooks.setFilter(new BookFilter(
+                    BookFilter.SortKey.valueOf(savedInstanceState.getString(SORT_KEY)),
+                    savedInstanceState.getDouble(MIN_RATING),
+                    savedInstanceState.getString(AUTHOR),
+                    savedInstanceState.getInt(LIMIT)));
+        }
+
+        // Set a scroll listener that starts fetching the next page in the background once the
+        // user nears the end of the books loaded so far, so the page is usually there before the
+        // user reaches it.
+        booksRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int lastVisiblePosition = mLayoutManager.findLastVisibleItemPosition();
+
+                // Thumbnails of the rows coming up next load ahead of the scroll position too
+                mAdapter.prefetchThumbnails(lastVisiblePosition);
+
+                int totalItemCount = mLayoutManager.getItemCount();
+                if (totalItemCount > 0
+                        && lastVisiblePosition >= totalItemCount - 1 - PREFETCH_DISTANCE) {
+                    Loader<BookQueryResult> loader = getLoaderManager().getLoader(BOOK_LOADER_ID);
+                    if (loader != null) {
+                        ((BookLoader) loader).loadNextPage();
+                    }
+                }
+            }
+        });
+
+        // Log how many frames miss their budget while scrolling
+        booksRecyclerView.addOnScrollListener(new ScrollJankTracker());
 
         // Find a reference to search view
-        SearchView querySearchView = (SearchView) findViewById(R.id.query_search_view);
+        final SearchView querySearchView = (SearchView) findViewById(R.id.query_search_view);
 
         // Add submit button to search view
         querySearchView.setSubmitButtonEnabled(true);
 
+        // Suggest past searches completing the query terms. The history is only read once the
+        // user starts typing, and the suggestions are refreshed when it is ready.
+        mSearchHistory = SearchHistory.getInstance(this);
+        mSearchSuggestionCount = getResources().getInteger(R.integer.search_suggestion_count);
+        mSuggestionsAdapter = new SimpleCursorAdapter(this,
+                android.R.layout.simple_list_item_1, null,
+                new String[] {SearchManager.SUGGEST_COLUMN_TEXT_1},
+                new int[] {android.R.id.text1}, 0);
+        querySearchView.setSuggestionsAdapter(mSuggestionsAdapter);
+        querySearchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+            @Override
+            public boolean onSuggestionSelect(int position) {
+                return false;
+            }
+
+            @Override
+            public boolean onSuggestionClick(int position) {
+                Cursor cursor = mSuggestionsAdapter.getCursor();
+                if (cursor != null && cursor.moveToPosition(position)) {
+                    querySearchView.setQuery(cursor.getString(cursor.getColumnIndex(
+                            SearchManager.SUGGEST_COLUMN_TEXT_1)), true);
+                }
+                return true;
+            }
+        });
+        mSearchHistory.setOnLoadedListener(new SearchHistory.OnLoadedListener() {
+            @Override
+            public void onHistoryLoaded() {
+                showSuggestions(querySearchView.getQuery().toString());
+            }
+        });
+
         // Preparing Loader. Without the initialization of the Loader inside onCreate(), the items on
-        // the list view disappear when rotating the device.
+        // the list disappear when rotating the device.
         Log.i(LOG_TAG, "initLoader(): initializing Loader 0.");
         getLoaderManager().initLoader(BOOK_LOADER_ID, null, this);
 
-        // Set listener on changes and submission of the query terms in the search view
-        // Only implement a listener for the query submission, since it's the only thing we are
-        // interested in this case.
+        // Only the loader initialized above, for the query that was saved, starts from the saved
+        // state. If the loader survived, it has its books already.
+        mLoaderState = null;
+
+        // Set listener on changes and submission of the query terms in the search view.
+        // Submitting searches right away, while changes search once the user stops typing.
         querySearchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String s) {
+                // The user asked for results right away, so drop any pending typed query
+                mSearchHandler.removeCallbacks(mDebouncedSearch);
+                mSearchHistory.record(s);
+                startSearch(s, mSubmittedSearchResults);
+                return false;
+            }
 
-                // Get a reference to the ConnectivityManager to check state of network connectivity
-                ConnectivityManager cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+            @Override
+            public boolean onQueryTextChange(String s) {
+                // Wait for typing to settle before searching, so that every keystroke doesn't
+                // turn into its own request
+                showSuggestions(s);
+                mSearchHandler.removeCallbacks(mDebouncedSearch);
+                mPendingQuery = s;
+                if (s.trim().length() >= mSearchMinQueryLength) {
+                    mSearchHandler.postDelayed(mDebouncedSearch, mSearchDebounceMillis);
+                }
+                return false;
+            }
+        });
+    }
 
-                // Get details on the currently active default data network
-                NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+    /**
+     * Show the past searches that best complete the given query terms below the search view.
+     */
+    private void showSuggestions(String text) {
+        mSuggestionsAdapter.changeCursor(
+                mSearchHistory.getSuggestions(text, mSearchSuggestionCount));
+    }
 
-                // Get connection status
-                boolean isConnected = activeNetwork != null &&
-                        activeNetwork.isConnectedOrConnecting();
+    /**
+     * Search for the given terms, showing a progress indicator until the results are loaded.
+     * Without a network connection, the books stored for a previous identical search are shown.
+     *
+     * @param query terms typed by the user
+     * @param firstLoadResults amount of books to load right away, fetching several pages at the
+     *                         same time if more than a page
+     */
+    private void startSearch(String query, int firstLoadResults) {
+
+        // When the new query narrows the one shown, keep showing its matching books while the
+        // new ones load. Otherwise, clear the adapter of previous data so that it only shows the
+        // data we are about to fetch.
+        String shownQuery = queryUrl == null ? null : Uri.parse(queryUrl).getQueryParameter("q");
+        List<Book> refinedBooks = QueryRefiner.isRefinement(shownQuery, query)
+                ? QueryRefiner.refine(mFilteredBooks.getBooks(), query)
+                : Collections.<Book>emptyList();
+        mFilteredBooks.setBooks(refinedBooks);
+        if (!refinedBooks.isEmpty()) {
+            Log.i(LOG_TAG, "startSearch(): showing " + refinedBooks.size()
+                    + " books refined from \"" + shownQuery + "\".");
+            mRefinedPage = new BookPage(refinedBooks, refinedBooks.size());
+        }
 
-                // If there is a network connection, fetch the data
-                if (isConnected) {
+        // Make progress bar visible so that the user knows we are doing some work in
+        // the background
+        mProgressIndicator.setVisibility(View.VISIBLE);
 
-                    // Clear the adapter of previous data so that it only shows the data we are
-                    // about to fetch.
-                    mAdapter.clear();
+        // Hide empty text view by setting text to an empty string
+        mEmptyTextView.setText("");
 
-                    // Make progress bar visible so that the user knows we are doing some work in
-                    // the background
-                    mProgressIndicator.setVisibility(View.VISIBLE);
+        // Build the query url, encoding the terms typed by the user
+        queryUrl = QueryUtils.buildQueryUrl(query);
 
-                    // Hide empty text view by setting text to an empty string
-                    mEmptyTextView.setText("");
+        Log.i(LOG_TAG, "Query text: " + query);
+        Log.i(LOG_TAG, "Query url: " + queryUrl);
 
-                    // Remove all empty spaces form query string
-                    queryUrl = GOOGLE_BOOKS_BASE_URL + s.replace(" ", "");
+        // Get a proper loader manager and initialize the loader. Pass in the int ID constant
+        // defined above and pass in the amount of books to load in the bundle. Pass in this
+        // activity for the LoaderCallbacks parameter (which is valid because this activity
+        // implements the LoaderCallbacks interface).
+        Bundle args = new Bundle();
+        args.putInt(FIRST_LOAD_RESULTS, firstLoadResults);
+        Log.i(LOG_TAG, "restartLoader(): restarting Loader 0.");
+        getLoaderManager().restartLoader(BOOK_LOADER_ID, args, this);
 
-                    Log.i(LOG_TAG, "Query text: " + s);
-                    Log.i(LOG_TAG, "Query url: " + queryUrl);
+        // Only the loader created above starts from the refined books
+        mRefinedPage = null;
+    }
 
-                    // Get a proper loader manager and initialize the loader. Pass in the int ID constant
-                    // defined above and pass in null for the bundle. Pass in this activity for the
-                    // LoaderCallbacks parameter (which is valid because this activity implements the
-                    // LoaderCallbacks interface).
-                    Log.i(LOG_TAG, "restartLoader(): restarting Loader 0.");
-                    getLoaderManager().restartLoader(BOOK_LOADER_ID, null, BookSearchActivity.this);
-                } else {
-                    // Otherwise, display error
-                    // First, hide loading indicator so error message will be clearly visible
-                    // and we show we are done with the background work
-                    mProgressIndicator.setVisibility(View.GONE);
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_main, menu);
+        menu.findItem(R.id.filter_min_rating).setTitle(
+                getString(R.string.filter_min_rating, mFilterMinRating));
+        menu.findItem(R.id.filter_top).setTitle(getString(R.string.filter_top, mFilterTopCount));
+        return true;
+    }
 
-                    // Update empty state with no connection error message
-                    mEmptyTextView.setText(R.string.no_internet);
-                }
-                return false;
-            }
+    /**
+     * Check the order and filters applied to the books loaded.
+     */
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        BookFilter filter = mFilteredBooks.getFilter();
+        switch (filter.getSortKey()) {
+            case RATING:
+                menu.findItem(R.id.sort_rating).setChecked(true);
+                break;
+            case RATINGS_COUNT:
+                menu.findItem(R.id.sort_ratings_count).setChecked(true);
+                break;
+            default:
+                menu.findItem(R.id.sort_relevance).setChecked(true);
+        }
+        menu.findItem(R.id.filter_min_rating).setChecked(
+                filter.getMinRating() != BookFilter.ANY_RATING);
+        menu.findItem(R.id.filter_top).setChecked(filter.getLimit() != BookFilter.NO_LIMIT);
+        menu.findItem(R.id.filter_author).setTitle(filter.getAuthor() == null
+                ? getString(R.string.filter_author)
+                : getString(R.string.filter_author_current, filter.getAuthor()));
+        return super.onPrepareOptionsMenu(menu);
+    }
 
-            @Override
-            public boolean onQueryTextChange(String s) {
-                return false;
-            }
-        });
+    /**
+     * Sort or filter the books loaded as chosen in the menu, without loading them again.
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        BookFilter filter = mFilteredBooks.getFilter();
+        switch (item.getItemId()) {
+            case R.id.sort_relevance:
+                setFilter(filter.withSortKey(BookFilter.SortKey.RELEVANCE));
+                return true;
+            case R.id.sort_rating:
+                setFilter(filter.withSortKey(BookFilter.SortKey.RATING));
+                return true;
+            case R.id.sort_ratings_count:
+                setFilter(filter.withSortKey(BookFilter.SortKey.RATINGS_COUNT));
+                return true;
+            case R.id.filter_min_rating:
+                setFilter(filter.withMinRating(item.isChecked()
+                        ? BookFilter.ANY_RATING : mFilterMinRating));
+                return true;
+            case R.id.filter_top:
+                setFilter(filter.withLimit(item.isChecked()
+                        ? BookFilter.NO_LIMIT : mFilterTopCount));
+                return true;
+            case R.id.filter_author:
+                showAuthorFilterDialog();
+                return true;
+            case R.id.clear_filters:
+                setFilter(BookFilter.NONE);
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    /**
+     * Ask for the text an author of the books shown must have in their name.
+     */
+    private void showAuthorFilterDialog() {
+        final EditText authorEditText = new EditText(this);
+        authorEditText.setHint(R.string.filter_author_hint);
+        authorEditText.setSingleLine(true);
+        authorEditText.setText(mFilteredBooks.getFilter().getAuthor());
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.filter_author)
+                .setView(authorEditText)
+                .setPositiveButton(R.string.filter_author_apply,
+                        new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which) {
+                                setFilter(mFilteredBooks.getFilter().withAuthor(
+                                        authorEditText.getText().toString()));
+                            }
+                        })
+                .setNeutralButton(R.string.filter_author_any,
+                        new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which) {
+                                setFilter(mFilteredBooks.getFilter().withAuthor(null));
+                            }
+                        })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Sort and filter the books loaded with the given filter, and keep it for later queries.
+     */
+    private void setFilter(BookFilter filter) {
+        Log.i(LOG_TAG, "setFilter(): " + filter);
+        mFilteredBooks.setFilter(filter);
+        invalidateOptionsMenu();
+    }
+
+    /**
+     * Show the empty text view when there are no books in the list, and hide it otherwise.
+     */
+    private void updateEmptyView() {
+        mEmptyTextView.setVisibility(mAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
     @Override
-    public Loader<List<Book>> onCreateLoader(int i, Bundle bundle) {
+    public Loader<BookQueryResult> onCreateLoader(int i, Bundle bundle) {
         Log.i(LOG_TAG, "onCreateLoader(): creating new Loader.");
-        return new BookLoader(this, queryUrl);
+        int firstLoadResults = bundle != null
+                ? bundle.getInt(FIRST_LOAD_RESULTS, BookLoader.PAGE_SIZE) : BookLoader.PAGE_SIZE;
+        return new BookLoader(this, queryUrl, mLoaderState, firstLoadResults, mRefinedPage);
     }
 
     @Override
-    public void onLoadFinished(Loader<List<Book>> loader, List<Book> books) {
-        // Hide progress indicator when loading in background has finished
-        mProgressIndicator.setVisibility(View.GONE);
+    public void onLoadFinished(Loader<BookQueryResult> loader, BookQueryResult result) {
+        // Discard results for a query that is no longer the current one, which can happen when
+        // the user keeps typing while a search-as-you-type query is loading.
+        if (!TextUtils.equals(((BookLoader) loader).getUrl(), queryUrl)) {
+            Log.i(LOG_TAG, "onLoadFinished(): Discarding results of an old query.");
+            return;
+        }
+
+        // Hide progress indicator when loading in background has finished. Books delivered while
+        // the page is still loading, streamed in or read locally, keep it visible.
+        if (!((BookLoader) loader).isLoadingPage()) {
+            mProgressIndicator.setVisibility(View.GONE);
+        }
 
         // Check if this is the first time the Activity has been created, which signals that
         // the Loader is only being initialized and the user still hasn't typed any queries
@@ -213,30 +588,55 @@ public class BookSearchActivity extends AppCompatActivity implements LoaderManag
             return;
         }
 
-        // Check if there was an error response code. If so, change text on empty text view to show this
-        // and exit early.
-        if (QueryUtils.getHttpRequestResponseCode() != 200) {
-            mEmptyTextView.setText(R.string.bad_response_code);
-            Log.i(LOG_TAG, "onLoadFinished(): Bad response code, exiting early.");
+        Log.i(LOG_TAG, "onLoadFinished(): " + result);
+
+        List<Book> books = result.getPage().getBooks();
+
+        // Check if the request failed and there are no books from earlier pages to show. If so,
+        // change text on empty text view to show this and exit early.
+        if (!result.isSuccessful() && books.isEmpty()) {
+            if (isRateLimited(result)) {
+                // The search was held back by the quota, not broken
+                mEmptyTextView.setText(R.string.rate_limited);
+                Log.i(LOG_TAG, "onLoadFinished(): Rate limited, exiting early.");
+            } else if (BookLoader.isNetworkAvailable(this)) {
+                mEmptyTextView.setText(R.string.bad_response_code);
+                Log.i(LOG_TAG, "onLoadFinished(): Bad response code, exiting early.");
+            } else {
+                // Nothing was stored for this query, so there is nothing to show offline
+                mEmptyTextView.setText(R.string.no_internet);
+                Log.i(LOG_TAG, "onLoadFinished(): No connection and no stored books, exiting early.");
+            }
             return;
         }
 
-        // If there is a valid list of {@link Book}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (books != null && !books.isEmpty()) {
-            mAdapter.addAll(books);
+        // If there is a valid list of {@link Book}s, then show them in the adapter, sorted and
+        // filtered as the user chose. Books from pages loaded after the first one are appended
+        // to the end. Only the rows that changed are updated.
+        mFilteredBooks.setBooks(books);
+        if (!books.isEmpty()) {
             Log.i(LOG_TAG, "onLoadFinished(): Data was received and assigned to Adapter.");
         } else {
-            // Otherwise, change the text on the empty text view to "no books found".
+            // Otherwise, change the text on the empty text view to "no books found", the local
+            // books shown while loading being removed.
             mEmptyTextView.setText(R.string.no_books);
             Log.i(LOG_TAG, "onLoadFinished(): No Data was received (Empty or null results).");
         }
     }
 
+    /**
+     * Returns whether a request failed because the Google Books quota was exceeded, whether
+     * the server said so or the request was shed before being sent.
+     */
+    private static boolean isRateLimited(BookQueryResult result) {
+        return result.getResponseCode() == RequestScheduler.HTTP_TOO_MANY_REQUESTS
+                || result.getError() instanceof RequestShedException;
+    }
+
     @Override
-    public void onLoaderReset(Loader<List<Book>> loader) {
+    public void onLoaderReset(Loader<BookQueryResult> loader) {
         // Remove references to Loader data because it won't be available anymore.
-        mAdapter.addAll(new ArrayList<Book>());
+        mFilteredBooks.setBooks(Collections.<Book>emptyList());
 
         Log.i(LOG_TAG, "onLoaderReset(): Activity is being popped from back stack. Data won't be available anymore. Removing references from Loader data.");
     }
@@ -253,6 +653,22 @@ public class BookSearchActivity extends AppCompatActivity implements LoaderManag
 
         // Use string key as first argument and the value we want to save as second argument
         outState.putBoolean(IS_FIRST_LOAD, isFirstLoad);
+        outState.putString(QUERY_URL, queryUrl);
+
+        // Save the order and filters chosen, which apply to every query
+        BookFilter filter = mFilteredBooks.getFilter();
+        outState.putString(SORT_KEY, filter.getSortKey().name());
+        outState.putDouble(MIN_RATING, filter.getMinRating());
+        outState.putString(AUTHOR, filter.getAuthor());
+        outState.putInt(LIMIT, filter.getLimit());
+
+        // Save the books loaded so far, so they survive the process being killed
+        Loader<BookQueryResult> loader = getLoaderManager().getLoader(BOOK_LOADER_ID);
+        if (loader != null) {
+            Bundle loaderState = new Bundle();
+            ((BookLoader) loader).saveState(loaderState);
+            outState.putBundle(LOADER_STATE, loaderState);
+        }
         super.onSaveInstanceState(outState);
     }
 
@@ -273,9 +689,18 @@ public class BookSearchActivity extends AppCompatActivity implements LoaderManag
     @Override
     protected void onStart() {
         super.onStart();
+        registerReceiver(mConnectivityReceiver,
+                new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
         Log.i(LOG_TAG, "onStart() called. isFirstLoad: " + isFirstLoad);
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        unregisterReceiver(mConnectivityReceiver);
+        Log.i(LOG_TAG, "onStop() called.");
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -285,6 +710,25 @@ public class BookSearchActivity extends AppCompatActivity implements LoaderManag
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mSearchHandler.removeCallbacks(mDebouncedSearch);
+        mSearchHistory.setOnLoadedListener(null);
+        mSuggestionsAdapter.changeCursor(null);
         Log.i(LOG_TAG, "onDestroy() called.");
     }
+
+    /**
+     * Writes the search metrics along with the state of the activity, for
+     * "adb shell dumpsys activity com.example.android.booksearch". Passing "metrics-csv" as an
+     * argument writes every histogram bucket as CSV instead, for analysis.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        SearchMetrics metrics = SearchMetrics.getInstance();
+        if (args != null && Arrays.asList(args).contains(DUMP_METRICS_CSV)) {
+            metrics.export(writer);
+            return;
+        }
+        super.dump(prefix, fd, writer, args);
+        metrics.dump(writer);
+    }
 }
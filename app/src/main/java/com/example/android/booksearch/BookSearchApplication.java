@@ -0,0 +1,24 @@
+package com.example.android.booksearch;
+
+import android.app.Application;
+
+import com.example.android.booksearch.core.Logger;
+import com.example.android.booksearch.core.TransportConfig;
+import com.example.android.booksearch.core.UrlConnectionTransport;
+
+/**
+ * Application of the app, which sets up the core engine before any component runs.
+ */
+public class BookSearchApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // The core engine is plain Java; send its log messages where the app's go
+        Logger.setLogger(new AndroidLogger());
+
+        // The connection pool is shared by the whole process, so size it once, before any request
+        UrlConnectionTransport.configureConnectionPool(TransportConfig.DEFAULT);
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.android.booksearch;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookPage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Persistent local store of the books fetched for previous searches, so that a search the user
+ * has run before can be answered right away, even without a network connection.
+ *
+ * Books are stored once, by volume ID, in the books table. The query_books table maps each
+ * canonical query url to the books it returned, in order, and the queries table holds the total
+ * amount of results and when the query was last fetched.
+ *
+ * The store is capped at {@link #MAX_QUERIES} queries: those fetched longest ago are forgotten
+ * when the books are read for the {@link BookIndex}, once per process, together with the books
+ * no other query returned. This bounds both the size of the database and the time taken to
+ * index it.
+ */
+public final class BookStore extends SQLiteOpenHelper {
+
+    /** Name of the database file */
+    private static final String DATABASE_NAME = "books.db";
+
+    /** Version of the database schema */
+    private static final int DATABASE_VERSION = 1;
+
+    /** Maximum amount of books stored for a single query */
+    private static final int MAX_BOOKS_PER_QUERY = 200;
+
+    /** Maximum amount of queries kept; those fetched longest ago are forgotten first */
+    private static final int MAX_QUERIES = 50;
+
+    /** Separator between author names in the authors column, which never appears in a name */
+    private static final String AUTHOR_SEPARATOR = "\u001F";
+
+    private static final String TABLE_BOOKS = "books";
+    private static final String TABLE_QUERIES = "queries";
+    private static final String TABLE_QUERY_BOOKS = "query_books";
+
+    private static final String COLUMN_BOOK_KEY = "book_key";
+    private static final String COLUMN_VOLUME_ID = "volume_id";
+    private static final String COLUMN_TITLE = "title";
+    private static final String COLUMN_AUTHORS = "authors";
+    private static final String COLUMN_RATING = "rating";
+    private static final String COLUMN_RATINGS_COUNT = "ratings_count";
+    private static final String COLUMN_INFO_URL = "info_url";
+    private static final String COLUMN_THUMBNAIL_URL = "thumbnail_url";
+    private static final String COLUMN_QUERY_URL = "query_url";
+    private static final String COLUMN_TOTAL_ITEMS = "total_items";
+    private static final String COLUMN_FETCHED_AT = "fetched_at";
+    private static final String COLUMN_POSITION = "position";
+
+    /** Query returning the books stored for a query url, in order */
+    private static final String SELECT_QUERY_BOOKS = "SELECT b." + COLUMN_VOLUME_ID
+            + ", b." + COLUMN_TITLE + ", b." + COLUMN_AUTHORS + ", b." + COLUMN_RATING
+            + ", b." + COLUMN_RATINGS_COUNT + ", b." + COLUMN_INFO_URL
+            + ", b." + COLUMN_THUMBNAIL_URL
+            + " FROM " + TABLE_QUERY_BOOKS + " qb JOIN " + TABLE_BOOKS + " b"
+            + " ON qb." + COLUMN_BOOK_KEY + " = b." + COLUMN_BOOK_KEY
+            + " WHERE qb." + COLUMN_QUERY_URL + " = ?"
+            + " ORDER BY qb." + COLUMN_POSITION;
+
+    /** Query returning every book stored */
+    private static final String SELECT_ALL_BOOKS = "SELECT " + COLUMN_VOLUME_ID
+            + ", " + COLUMN_TITLE + ", " + COLUMN_AUTHORS + ", " + COLUMN_RATING
+            + ", " + COLUMN_RATINGS_COUNT + ", " + COLUMN_INFO_URL + ", " + COLUMN_THUMBNAIL_URL
+            + " FROM " + TABLE_BOOKS;
+
+    /** Single instance of the store, shared by every {@link BookLoader} */
+    private static BookStore sInstance;
+
+    /**
+     * Returns the single {@link BookStore} instance, creating it if needed.
+     *
+     * @param context any context, only its application context is kept
+     */
+    public static synchronized BookStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BookStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private BookStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_BOOKS + " ("
+                + COLUMN_BOOK_KEY + " TEXT PRIMARY KEY, "
+                + COLUMN_VOLUME_ID + " TEXT, "
+                + COLUMN_TITLE + " TEXT NOT NULL, "
+                + COLUMN_AUTHORS + " TEXT NOT NULL, "
+                + COLUMN_RATING + " REAL NOT NULL, "
+                + COLUMN_RATINGS_COUNT + " INTEGER NOT NULL, "
+                + COLUMN_INFO_URL + " TEXT NOT NULL, "
+                + COLUMN_THUMBNAIL_URL + " TEXT NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_QUERIES + " ("
+                + COLUMN_QUERY_URL + " TEXT PRIMARY KEY, "
+                + COLUMN_TOTAL_ITEMS + " INTEGER NOT NULL, "
+                + COLUMN_FETCHED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_QUERY_BOOKS + " ("
+                + COLUMN_QUERY_URL + " TEXT NOT NULL, "
+                + COLUMN_POSITION + " INTEGER NOT NULL, "
+                + COLUMN_BOOK_KEY + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_QUERY_URL + ", " + COLUMN_POSITION + "))");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The store only holds data that can be fetched again, so start over
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_QUERY_BOOKS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_QUERIES);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BOOKS);
+        onCreate(db);
+    }
+
+    /**
+     * Returns the books stored for the given query url, or null if the query was never stored.
+     *
+     * @param queryUrl query url, without paging parameters
+     * @return page with every book stored for the query, or null
+     */
+    public BookPage getResults(String queryUrl) {
+        String key = BookCache.canonicalize(queryUrl);
+        SQLiteDatabase db = getReadableDatabase();
+
+        int totalItems;
+        Cursor cursor = db.query(TABLE_QUERIES, new String[] {COLUMN_TOTAL_ITEMS},
+                COLUMN_QUERY_URL + " = ?", new String[] {key}, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            totalItems = cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+
+        return new BookPage(readBooks(db.rawQuery(SELECT_QUERY_BOOKS, new String[] {key})),
+                totalItems);
+    }
+
+    /**
+     * Returns every book stored, for any query, after forgetting the queries fetched longest ago
+     * beyond {@link #MAX_QUERIES} and the books only they returned. Must not be called on the
+     * main thread.
+     *
+     * @return list of books, in no particular order
+     */
+    public List<Book> getAllBooks() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_QUERIES, COLUMN_QUERY_URL + " NOT IN (SELECT " + COLUMN_QUERY_URL
+                    + " FROM " + TABLE_QUERIES + " ORDER BY " + COLUMN_FETCHED_AT + " DESC LIMIT "
+                    + MAX_QUERIES + ")", null);
+            db.delete(TABLE_QUERY_BOOKS, COLUMN_QUERY_URL + " NOT IN (SELECT "
+                    + COLUMN_QUERY_URL + " FROM " + TABLE_QUERIES + ")", null);
+            db.delete(TABLE_BOOKS, COLUMN_BOOK_KEY + " NOT IN (SELECT " + COLUMN_BOOK_KEY
+                    + " FROM " + TABLE_QUERY_BOOKS + ")", null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return readBooks(db.rawQuery(SELECT_ALL_BOOKS, null));
+    }
+
+    /**
+     * Read the books of a cursor with the columns of the books table, except the key, and close
+     * it.
+     */
+    private static List<Book> readBooks(Cursor cursor) {
+        List<Book> books = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                String authors = cursor.getString(2);
+                ArrayList<String> authorList = TextUtils.isEmpty(authors)
+                        ? new ArrayList<String>()
+                        : new ArrayList<>(Arrays.asList(authors.split(AUTHOR_SEPARATOR)));
+                books.add(new Book(cursor.getString(0), cursor.getString(1), authorList,
+                        cursor.getDouble(3), cursor.getInt(4), cursor.getString(5),
+                        cursor.getString(6)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return books;
+    }
+
+    /**
+     * Stores the books loaded for the given query url, replacing those stored before.
+     *
+     * @param queryUrl query url, without paging parameters
+     * @param page every book loaded for the query, in order, and the total amount of results
+     */
+    public void putResults(String queryUrl, BookPage page) {
+        String key = BookCache.canonicalize(queryUrl);
+        List<Book> books = page.getBooks();
+        int count = Math.min(books.size(), MAX_BOOKS_PER_QUERY);
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues queryValues = new ContentValues();
+            queryValues.put(COLUMN_QUERY_URL, key);
+            queryValues.put(COLUMN_TOTAL_ITEMS, page.getTotalItems());
+            queryValues.put(COLUMN_FETCHED_AT, System.currentTimeMillis());
+            db.insertWithOnConflict(TABLE_QUERIES, null, queryValues,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+
+            db.delete(TABLE_QUERY_BOOKS, COLUMN_QUERY_URL + " = ?", new String[] {key});
+
+            SQLiteStatement insertBook = db.compileStatement("INSERT OR REPLACE INTO "
+                    + TABLE_BOOKS + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+            SQLiteStatement insertQueryBook = db.compileStatement("INSERT INTO "
+                    + TABLE_QUERY_BOOKS + " VALUES (?, ?, ?)");
+            try {
+                for (int i = 0; i < count; i++) {
+                    Book book = books.get(i);
+                    String bookKey = getBookKey(book);
+
+                    insertBook.clearBindings();
+                    insertBook.bindString(1, bookKey);
+                    if (book.getId() != null) {
+                        insertBook.bindString(2, book.getId());
+                    }
+                    insertBook.bindString(3, book.getTitle());
+                    insertBook.bindString(4, TextUtils.join(AUTHOR_SEPARATOR, book.getAuthors()));
+                    insertBook.bindDouble(5, book.getRating());
+                    insertBook.bindLong(6, book.getRatingsCount());
+                    insertBook.bindString(7, book.getUrl());
+                    insertBook.bindString(8, book.getSmallThumbnailUrl());
+                    insertBook.executeInsert();
+
+                    insertQueryBook.bindString(1, key);
+                    insertQueryBook.bindLong(2, i);
+                    insertQueryBook.bindString(3, bookKey);
+                    insertQueryBook.executeInsert();
+                }
+            } finally {
+                insertBook.close();
+                insertQueryBook.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the key a book is stored under: its volume ID, or its info url for books without
+     * one.
+     */
+    static String getBookKey(Book book) {
+        return book.getId() != null ? book.getId() : book.getUrl();
+    }
+}
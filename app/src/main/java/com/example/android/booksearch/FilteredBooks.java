@@ -0,0 +1,126 @@
+package com.example.android.booksearch;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookFilter;
+import com.example.android.booksearch.core.BookTable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The books loaded for the current query, sorted and filtered as the user chose. Changing the
+ * filter only sorts and filters the books already loaded again, it never loads them again.
+ *
+ * Without a filter the books are passed on right away, so pages appended as they load reach the
+ * list as before. Otherwise the books are laid out in a {@link BookTable} and filtered on a
+ * background thread, and only the latest result is passed on, on the main thread. Every method
+ * must be called on the main thread.
+ */
+final class FilteredBooks {
+
+    /**
+     * Listener for the filtered books.
+     */
+    interface Listener {
+
+        /**
+         * Called on the main thread with the books to show.
+         *
+         * @param books books passing the filter, in its order; must not be modified
+         * @param loadedCount amount of books loaded, whether they pass the filter or not
+         */
+        void onBooksFiltered(List<Book> books, int loadedCount);
+    }
+
+    /** Listener for the filtered books */
+    private final Listener mListener;
+
+    /** Handler used to pass on books filtered in the background on the main thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Every book loaded for the current query, in the order of the server */
+    private List<Book> mBooks = Collections.emptyList();
+
+    /** Filter applied to the books */
+    private BookFilter mFilter = BookFilter.NONE;
+
+    /** Table of the books filtered last, reused when more pages are appended */
+    private BookTable mTable = BookTable.EMPTY;
+
+    /** Number of the latest change, used to drop results of books or filters replaced since */
+    private int mGeneration;
+
+    /**
+     * Constructs a new {@link FilteredBooks}.
+     *
+     * @param listener listener for the filtered books
+     */
+    FilteredBooks(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Returns every book loaded for the current query, whether it passes the filter or not.
+     */
+    List<Book> getBooks() {
+        return mBooks;
+    }
+
+    /**
+     * Returns the filter applied to the books.
+     */
+    BookFilter getFilter() {
+        return mFilter;
+    }
+
+    /**
+     * Replace the books loaded, and pass them on filtered.
+     *
+     * @param books every book loaded for the current query; must not be modified later
+     */
+    void setBooks(List<Book> books) {
+        mBooks = books;
+        apply();
+    }
+
+    /**
+     * Replace the filter, and pass the books loaded on filtered with it.
+     */
+    void setFilter(BookFilter filter) {
+        mFilter = filter;
+        apply();
+    }
+
+    private void apply() {
+        final int generation = ++mGeneration;
+        final List<Book> books = mBooks;
+        final BookFilter filter = mFilter;
+        if (filter.isNone() || books.isEmpty()) {
+            mListener.onBooksFiltered(books, books.size());
+            return;
+        }
+
+        final BookTable previous = mTable;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final BookTable table = BookTable.of(books, previous);
+                final List<Book> filtered = Collections.unmodifiableList(table.select(filter));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Pass the books on unless they or the filter were replaced meanwhile
+                        if (generation == mGeneration) {
+                            mTable = table;
+                            mListener.onBooksFiltered(filtered, books.size());
+                        }
+                    }
+                });
+            }
+        });
+    }
+}
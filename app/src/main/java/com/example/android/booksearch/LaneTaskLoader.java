@@ -0,0 +1,216 @@
+package com.example.android.booksearch;
+
+import android.content.Context;
+import android.content.Loader;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.android.booksearch.core.OperationCanceledException;
+import com.example.android.booksearch.core.SearchMetrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loader that loads its data in the background like {@link android.content.AsyncTaskLoader},
+ * but on a lane of the {@link BookExecutor} instead of the thread pool shared by every AsyncTask
+ * in the process, so loads can be prioritized against the rest of the app's work.
+ *
+ * As with AsyncTaskLoader, at most one load runs at a time: a load forced while a cancelled one
+ * is still finishing waits for it, and results of cancelled loads are handed to
+ * {@link #onCanceled(Object)} instead of being delivered.
+ *
+ * @param <D> type of the data loaded
+ */
+public abstract class LaneTaskLoader<D> extends Loader<D> {
+
+    /** Executor running the loads */
+    private final BookExecutor mExecutor = BookExecutor.getInstance();
+
+    /** Handler used to finish loads on the main thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Latest load, not started yet if another one is being cancelled. Main thread only. */
+    private LoadTask mTask;
+
+    /** Load being cancelled, which the next one waits for. Only written on the main thread. */
+    private volatile LoadTask mCancellingTask;
+
+    /**
+     * Constructs a new {@link LaneTaskLoader}.
+     *
+     * @param context any context, only its application context is kept
+     */
+    public LaneTaskLoader(Context context) {
+        super(context);
+    }
+
+    /**
+     * Returns the lane the next load runs in. Called on the main thread when the load is
+     * started.
+     */
+    protected abstract BookExecutor.Lane getLane();
+
+    /**
+     * Returns the data loaded. Called on a thread of the executor.
+     *
+     * @throws OperationCanceledException if the load was cancelled
+     */
+    public abstract D loadInBackground();
+
+    /**
+     * Called on the main thread while a load is running, when it was cancelled. Subclasses stop
+     * the load here, so it finishes as soon as possible.
+     */
+    public void cancelLoadInBackground() {
+    }
+
+    /**
+     * Returns whether the running load was cancelled.
+     */
+    public boolean isLoadInBackgroundCanceled() {
+        return mCancellingTask != null;
+    }
+
+    /**
+     * Returns whether a load was started that hasn't delivered its result or been cancelled yet.
+     * Main thread only.
+     */
+    protected boolean isLoadPending() {
+        return mTask != null;
+    }
+
+    /**
+     * Called on the main thread with the data of a load that was cancelled, so it can be
+     * released.
+     *
+     * @param data data loaded, or null
+     */
+    public void onCanceled(D data) {
+    }
+
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        cancelLoad();
+        mTask = new LoadTask();
+        executePendingTask();
+    }
+
+    @Override
+    protected boolean onCancelLoad() {
+        if (mTask == null) {
+            return false;
+        }
+        LoadTask task = mTask;
+        mTask = null;
+        if (mCancellingTask != null) {
+            // The load never started, since it was waiting for another one
+            return false;
+        }
+
+        task.mIsCanceled = true;
+        mCancellingTask = task;
+        if (mExecutor.remove(task.mLane, task)) {
+            // The load never started either; cancelling it finishes it right away
+            task.cancel(false);
+        } else {
+            cancelLoadInBackground();
+        }
+        return true;
+    }
+
+    /**
+     * Start the latest load, unless it is waiting for a load being cancelled.
+     */
+    private void executePendingTask() {
+        if (mTask != null && mCancellingTask == null && mTask.mLane == null) {
+            mTask.mLane = getLane();
+            mTask.mQueuedNanos = System.nanoTime();
+            mExecutor.execute(mTask.mLane, mTask);
+        }
+    }
+
+    /**
+     * Deliver the data of a load that finished, or hand it to {@link #onCanceled(Object)} if it
+     * was cancelled, discarded or superseded. Called on the main thread.
+     */
+    private void onLoadFinished(LoadTask task) {
+        D data = null;
+        boolean isCanceled = task.mIsCanceled || task.isCancelled();
+        if (!task.isCancelled()) {
+            try {
+                data = task.get();
+            } catch (InterruptedException e) {
+                // Can't happen, the task is done
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof OperationCanceledException)) {
+                    throw new RuntimeException("An error occurred while loading in background",
+                            e.getCause());
+                }
+                isCanceled = true;
+            }
+        }
+
+        if (task == mCancellingTask) {
+            mCancellingTask = null;
+            onCanceled(data);
+            deliverCancellation();
+            executePendingTask();
+        } else if (task == mTask && !isCanceled && !isAbandoned()) {
+            mTask = null;
+            deliverResult(data);
+        } else {
+            if (task == mTask) {
+                // Discarded by the executor, or abandoned: nothing will be delivered
+                mTask = null;
+                deliverCancellation();
+            }
+            onCanceled(data);
+        }
+    }
+
+    /**
+     * A single load, which finishes on the main thread once it ran or was cancelled before
+     * running.
+     */
+    private final class LoadTask extends FutureTask<D> {
+
+        /** Lane the load was started in, or null if not started yet. Main thread only. */
+        BookExecutor.Lane mLane;
+
+        /** Whether the loader cancelled the load. Main thread only. */
+        boolean mIsCanceled;
+
+        /** Time the load was given to the executor, from System.nanoTime() */
+        volatile long mQueuedNanos;
+
+        LoadTask() {
+            super(new Callable<D>() {
+                @Override
+                public D call() {
+                    return loadInBackground();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            SearchMetrics.getInstance().recordDuration(SearchMetrics.Stage.LOADER_QUEUE,
+                    System.nanoTime() - mQueuedNanos);
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onLoadFinished(LoadTask.this);
+                }
+            });
+        }
+    }
+}
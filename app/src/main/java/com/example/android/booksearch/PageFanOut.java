@@ -0,0 +1,281 @@
+package com.example.android.booksearch;
+
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookPage;
+import com.example.android.booksearch.core.BookQueryResult;
+import com.example.android.booksearch.core.CancellationSignal;
+import com.example.android.booksearch.core.OperationCanceledException;
+
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+/**
+ * Fetches several consecutive pages of results at the same time, at most a fixed amount at
+ * once, and merges them back in rank order as they complete.
+ *
+ * A page is merged once every page before it has been merged, so books are always in the order
+ * the server ranked them; volumes already merged from an earlier page are dropped. Every time
+ * more books are merged, the books so far are handed to a {@link Listener}, so the first pages
+ * can be shown while the rest are still loading. Pages past the end of the results, once known,
+ * are not requested.
+ *
+ * Each page request gets its own {@link CancellationSignal}, since a signal only has one
+ * listener: cancelling the signal given to {@link #fetch} cancels every page still running, and
+ * pages still running when the fetch ends early are cancelled as well.
+ */
+final class PageFanOut {
+
+    /**
+     * Loads a single page of results.
+     */
+    interface PageSource {
+
+        /**
+         * Returns the result of loading the page starting at the given index. Called on the
+         * threads of the executor, several at a time.
+         */
+        BookQueryResult loadPage(int startIndex, int pageSize,
+                                 CancellationSignal cancellationSignal);
+    }
+
+    /**
+     * Receives the books merged so far.
+     */
+    interface Listener {
+
+        /**
+         * Called on the thread that called {@link #fetch} every time more pages were merged,
+         * except for the last time, whose books are the result of fetch().
+         */
+        void onPagesMerged(BookPage booksSoFar);
+    }
+
+    /** Runs the page requests */
+    private final Executor mExecutor;
+
+    /** Maximum amount of page requests running at the same time */
+    private final int mMaxConcurrency;
+
+    /** Amount of results requested per page */
+    private final int mPageSize;
+
+    /** Position of the first result of the page after the last one merged */
+    private int mNextStartIndex;
+
+    /**
+     * Constructs a new {@link PageFanOut}.
+     *
+     * @param executor runs the page requests, with at least maxConcurrency threads
+     * @param maxConcurrency maximum amount of page requests running at the same time
+     * @param pageSize amount of results requested per page
+     */
+    PageFanOut(Executor executor, int maxConcurrency, int pageSize) {
+        mExecutor = executor;
+        mMaxConcurrency = maxConcurrency;
+        mPageSize = pageSize;
+    }
+
+    /**
+     * Fetch the given amount of pages from the start of the results, and return every book
+     * merged. Pages after one that failed are not merged, but the books before it are still
+     * returned, and {@link #getNextStartIndex()} points at the failed page.
+     *
+     * @param source loads each page
+     * @param pageCount amount of pages to fetch
+     * @param cancellationSignal signal to cancel the requests with, or null
+     * @param listener receives the books merged so far, or null
+     * @return result holding every book merged, in order, and the status of the first page if
+     *         it failed, or of the last page merged otherwise
+     * @throws OperationCanceledException if a request was cancelled
+     */
+    BookQueryResult fetch(final PageSource source, int pageCount,
+                          final CancellationSignal cancellationSignal, Listener listener) {
+        long startTime = System.nanoTime();
+        CompletionService<PageResult> completionService =
+                new ExecutorCompletionService<>(mExecutor);
+        BookQueryResult[] results = new BookQueryResult[pageCount];
+        List<Future<PageResult>> futures = new ArrayList<>();
+
+        List<Book> books = new ArrayList<>();
+        Set<String> bookIds = new HashSet<>();
+        int totalItems = -1;
+        int pagesSubmitted = 0;
+        int pagesMerged = 0;
+        BookQueryResult status = null;
+        mNextStartIndex = 0;
+
+        // Signals of the pages submitted, each cancelled along with the signal of the fetch
+        final List<CancellationSignal> pageSignals = new ArrayList<>();
+        if (cancellationSignal != null) {
+            cancellationSignal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+                @Override
+                public void onCancel() {
+                    cancelPages(pageSignals);
+                }
+            });
+        }
+
+        try {
+            while (pagesMerged < pageCount) {
+                // Keep up to the maximum amount of requests running, skipping pages known to be
+                // past the end of the results
+                while (pagesSubmitted < pageCount
+                        && pagesSubmitted - pagesMerged < mMaxConcurrency
+                        && (totalItems < 0 || pagesSubmitted * mPageSize < totalItems)) {
+                    final int startIndex = pagesSubmitted * mPageSize;
+                    final CancellationSignal pageSignal = newPageSignal(pageSignals,
+                            cancellationSignal);
+                    futures.add(completionService.submit(new Callable<PageResult>() {
+                        @Override
+                        public PageResult call() {
+                            return new PageResult(startIndex,
+                                    source.loadPage(startIndex, mPageSize, pageSignal));
+                        }
+                    }));
+                    pagesSubmitted++;
+                }
+                if (pagesSubmitted == pagesMerged) {
+                    // Nothing left to wait for: the results ended before pageCount pages
+                    break;
+                }
+
+                PageResult completed = completionService.take().get();
+                results[completed.mStartIndex / mPageSize] = completed.mResult;
+
+                // Merge every page that is next in order
+                boolean isMerged = false;
+                boolean isFinished = false;
+                while (pagesMerged < pageCount && results[pagesMerged] != null) {
+                    BookQueryResult result = results[pagesMerged];
+                    if (!result.isSuccessful()) {
+                        // The first page's failure is the result; later ones keep what was merged
+                        if (status == null) {
+                            status = result;
+                        }
+                        isFinished = true;
+                        break;
+                    }
+
+                    status = result;
+                    BookPage page = result.getPage();
+                    for (Book book : page.getBooks()) {
+                        if (book.getId() == null || bookIds.add(book.getId())) {
+                            books.add(book);
+                        }
+                    }
+                    pagesMerged++;
+                    mNextStartIndex = pagesMerged * mPageSize;
+                    isMerged = true;
+
+                    // Stop when the server runs out of results, even if it reported more before
+                    if (page.getBooks().isEmpty()) {
+                        totalItems = mNextStartIndex;
+                        isFinished = true;
+                        break;
+                    }
+                    totalItems = page.getTotalItems();
+                }
+
+                if (isFinished) {
+                    break;
+                }
+                if (isMerged && listener != null && pagesMerged < pageCount) {
+                    listener.onPagesMerged(new BookPage(books, totalItems));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperationCanceledException();
+        } catch (ExecutionException e) {
+            // Cancellation and programming errors thrown by the page source end the fetch
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // The results of pages still running are not needed: abort their requests, so they
+            // don't hold on to threads of the executor the next query needs
+            if (cancellationSignal != null) {
+                cancellationSignal.setOnCancelListener(null);
+            }
+            cancelPages(pageSignals);
+            for (Future<PageResult> future : futures) {
+                future.cancel(false);
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+        if (status == null) {
+            return new BookQueryResult(BookQueryResult.NO_RESPONSE, null, elapsedMillis, null);
+        } else if (pagesMerged == 0) {
+            return new BookQueryResult(status.getResponseCode(), null, elapsedMillis,
+                    status.getError(), status.getSource());
+        }
+        return new BookQueryResult(HttpURLConnection.HTTP_OK, new BookPage(books, totalItems),
+                elapsedMillis, null, status.getSource());
+    }
+
+    /**
+     * Returns a new signal for a page request, cancelled right away if the signal of the fetch
+     * was cancelled already.
+     */
+    private static CancellationSignal newPageSignal(List<CancellationSignal> pageSignals,
+                                                    CancellationSignal cancellationSignal) {
+        CancellationSignal pageSignal = new CancellationSignal();
+        synchronized (pageSignals) {
+            pageSignals.add(pageSignal);
+        }
+
+        // Added before checking, so a cancellation in between reaches the page either way
+        if (cancellationSignal != null && cancellationSignal.isCanceled()) {
+            pageSignal.cancel();
+        }
+        return pageSignal;
+    }
+
+    /**
+     * Cancel the given page signals. Pages that finished already ignore it.
+     */
+    private static void cancelPages(List<CancellationSignal> pageSignals) {
+        List<CancellationSignal> signals;
+        synchronized (pageSignals) {
+            signals = new ArrayList<>(pageSignals);
+        }
+        for (CancellationSignal signal : signals) {
+            signal.cancel();
+        }
+    }
+
+    /**
+     * Returns the position of the first result after the pages merged by the last fetch, where
+     * paging can continue from.
+     */
+    int getNextStartIndex() {
+        return mNextStartIndex;
+    }
+
+    /**
+     * Result of a page together with the position of the page, since pages complete in any
+     * order.
+     */
+    private static final class PageResult {
+
+        final int mStartIndex;
+        final BookQueryResult mResult;
+
+        PageResult(int startIndex, BookQueryResult result) {
+            mStartIndex = startIndex;
+            mResult = result;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.android.booksearch;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.example.android.booksearch.core.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link Parcelable} holder of a {@link Book}, so the list shown can be saved with the activity
+ * state. Books themselves live in the plain Java core and can't be Parcelable.
+ */
+public final class ParcelableBook implements Parcelable {
+
+    /** Book held */
+    private final Book mBook;
+
+    /**
+     * Constructs a new {@link ParcelableBook}.
+     *
+     * @param book book to hold
+     */
+    public ParcelableBook(Book book) {
+        mBook = book;
+    }
+
+    /**
+     * Returns the book held
+     * @return book
+     */
+    public Book getBook() {
+        return mBook;
+    }
+
+    /**
+     * Returns the given books, each in a {@link ParcelableBook}, ready to put in a Bundle.
+     */
+    public static ArrayList<ParcelableBook> wrap(List<Book> books) {
+        ArrayList<ParcelableBook> parcelableBooks = new ArrayList<>(books.size());
+        for (Book book : books) {
+            parcelableBooks.add(new ParcelableBook(book));
+        }
+        return parcelableBooks;
+    }
+
+    /**
+     * Returns the books held by the given {@link ParcelableBook}s, read from a Bundle.
+     */
+    public static List<Book> unwrap(List<ParcelableBook> parcelableBooks) {
+        List<Book> books = new ArrayList<>(parcelableBooks.size());
+        for (ParcelableBook parcelableBook : parcelableBooks) {
+            books.add(parcelableBook.getBook());
+        }
+        return books;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        // Written field by field, in the order CREATOR reads them back
+        dest.writeString(mBook.getId());
+        dest.writeString(mBook.getTitle());
+        List<String> authors = mBook.getAuthors();
+        dest.writeStringArray(authors.toArray(new String[authors.size()]));
+        dest.writeDouble(mBook.getRating());
+        dest.writeInt(mBook.getRatingsCount());
+        dest.writeString(mBook.getUrl());
+        dest.writeString(mBook.getSmallThumbnailUrl());
+    }
+
+    /**
+     * Creates books from parcels written by {@link #writeToParcel(Parcel, int)}. The book
+     * constructor shares their strings again.
+     */
+    public static final Creator<ParcelableBook> CREATOR = new Creator<ParcelableBook>() {
+        @Override
+        public ParcelableBook createFromParcel(Parcel source) {
+            String id = source.readString();
+            String title = source.readString();
+            List<String> authors = Arrays.asList(source.createStringArray());
+            return new ParcelableBook(new Book(id, title, authors, source.readDouble(),
+                    source.readInt(), source.readString(), source.readString()));
+        }
+
+        @Override
+        public ParcelableBook[] newArray(int size) {
+            return new ParcelableBook[size];
+        }
+    };
+}
@@ -0,0 +1,138 @@
+package com.example.android.booksearch;
+
+import com.example.android.booksearch.core.Book;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Narrows the books of the previous search down to a new query that refines it, such as
+ * "tolkien hobbit" after "tolkien", so they can be shown at once while the server is asked.
+ *
+ * Terms are normalized and matched as prefixes the way the {@link BookIndex} does. A book
+ * matches when every term of the query matches a term of its title or authors; matches are
+ * ranked with the weights of the index, title and whole term matches first, and keep the order
+ * of the server otherwise.
+ */
+final class QueryRefiner {
+
+    /**
+     * Create a private constructor because no one should ever create a {@link QueryRefiner}
+     * object. This class is only meant to hold static methods.
+     */
+    private QueryRefiner() {
+    }
+
+    /**
+     * Returns whether the new query narrows the previous one: every term of the previous query
+     * is the start of a term of the new one, so most books matching the new query were likely
+     * matching the previous one too.
+     *
+     * @param previousQuery terms of the previous search, may be null
+     * @param query terms of the new search
+     */
+    static boolean isRefinement(String previousQuery, String query) {
+        String[] previousTerms = BookIndex.tokenize(previousQuery);
+        String[] terms = BookIndex.tokenize(query);
+        if (previousTerms.length == 0 || terms.length == 0) {
+            return false;
+        }
+        for (String previousTerm : previousTerms) {
+            if (!startsAny(terms, previousTerm, false)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the given books that match every term of the query, best ranked first.
+     *
+     * @param books books of the previous search, in the order of the server
+     * @param query terms of the new search
+     * @return matching books, a new list
+     */
+    static List<Book> refine(List<Book> books, String query) {
+        String[] queryTerms = BookIndex.tokenize(query);
+        final List<Book> matches = new ArrayList<>();
+        final List<Float> scores = new ArrayList<>();
+        if (queryTerms.length == 0) {
+            return matches;
+        }
+
+        for (Book book : books) {
+            String[] titleTerms = BookIndex.tokenize(book.getTitle());
+            String[] authorTerms = BookIndex.tokenize(joinAuthors(book.getAuthors()));
+
+            float score = 0f;
+            for (String queryTerm : queryTerms) {
+                float termScore = Math.max(
+                        termScore(titleTerms, queryTerm) * BookIndex.TITLE_WEIGHT,
+                        termScore(authorTerms, queryTerm));
+                if (termScore == 0f) {
+                    score = 0f;
+                    break;
+                }
+                score += termScore;
+            }
+            if (score > 0f) {
+                matches.add(book);
+                scores.add(score);
+            }
+        }
+
+        // Best score first. The sort is stable, so ties keep the order of the server.
+        List<Integer> positions = new ArrayList<>(matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            positions.add(i);
+        }
+        Collections.sort(positions, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Float.compare(scores.get(b), scores.get(a));
+            }
+        });
+
+        List<Book> ranked = new ArrayList<>(matches.size());
+        for (int position : positions) {
+            ranked.add(matches.get(position));
+        }
+        return ranked;
+    }
+
+    /**
+     * Returns the score of the best match of a query term among the given terms: the exact
+     * match weight if one is equal to it, 1 if one starts with it, or 0.
+     */
+    private static float termScore(String[] terms, String queryTerm) {
+        if (startsAny(terms, queryTerm, true)) {
+            return BookIndex.EXACT_MATCH_WEIGHT;
+        }
+        return startsAny(terms, queryTerm, false) ? 1f : 0f;
+    }
+
+    /**
+     * Returns whether any of the terms starts with, or is equal to if exact, the given prefix.
+     */
+    private static boolean startsAny(String[] terms, String prefix, boolean exact) {
+        for (String term : terms) {
+            if (exact ? term.equals(prefix) : term.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Join author names with spaces, to tokenize them at once.
+     */
+    private static String joinAuthors(List<String> authors) {
+        StringBuilder joined = new StringBuilder();
+        for (String author : authors) {
+            joined.append(author).append(' ');
+        }
+        return joined.toString();
+    }
+}
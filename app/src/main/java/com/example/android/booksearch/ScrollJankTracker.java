@@ -0,0 +1,76 @@
+package com.example.android.booksearch;
+
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+
+/**
+ * Scroll listener that measures scroll jank: while a {@link RecyclerView} scrolls, it times
+ * every frame with the {@link Choreographer} and, once scrolling stops, logs how many frames
+ * missed their 16 ms budget.
+ */
+public final class ScrollJankTracker extends RecyclerView.OnScrollListener
+        implements Choreographer.FrameCallback {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = ScrollJankTracker.class.getSimpleName();
+
+    /** Time between frames at 60 frames per second */
+    private static final long FRAME_INTERVAL_NANOS = 16666667L;
+
+    /**
+     * Time between frames above which a frame is janky. Frames start on vsync, so a frame that
+     * took over 16 ms shows up one whole interval late; half an interval of slack absorbs timing
+     * noise.
+     */
+    private static final long JANK_THRESHOLD_NANOS = FRAME_INTERVAL_NANOS * 3 / 2;
+
+    /** Whether frames are being timed */
+    private boolean mIsTracking;
+
+    /** Time of the previous frame, or 0 if there was none */
+    private long mLastFrameTimeNanos;
+
+    /** Amount of frames timed since scrolling started */
+    private int mFrameCount;
+
+    /** Amount of frames over budget since scrolling started */
+    private int mJankyFrameCount;
+
+    /** Longest frame since scrolling started */
+    private long mWorstFrameNanos;
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState != RecyclerView.SCROLL_STATE_IDLE && !mIsTracking) {
+            mIsTracking = true;
+            mLastFrameTimeNanos = 0;
+            mFrameCount = 0;
+            mJankyFrameCount = 0;
+            mWorstFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        } else if (newState == RecyclerView.SCROLL_STATE_IDLE && mIsTracking) {
+            mIsTracking = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+            Log.i(LOG_TAG, "Scrolled " + mFrameCount + " frames, " + mJankyFrameCount
+                    + " over 16 ms, worst " + mWorstFrameNanos / 1000000 + " ms.");
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mIsTracking) {
+            return;
+        }
+        if (mLastFrameTimeNanos != 0) {
+            long frameNanos = frameTimeNanos - mLastFrameTimeNanos;
+            mFrameCount++;
+            if (frameNanos > JANK_THRESHOLD_NANOS) {
+                mJankyFrameCount++;
+            }
+            mWorstFrameNanos = Math.max(mWorstFrameNanos, frameNanos);
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
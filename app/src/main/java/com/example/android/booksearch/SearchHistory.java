@@ -0,0 +1,273 @@
+package com.example.android.booksearch;
+
+import android.app.SearchManager;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * Persistent history of the searches submitted by the user, offered as suggestions while typing.
+ *
+ * Every query is stored once, by its normalized text, with how often and when it was last
+ * submitted and its frecency score. The history is only read from disk the first time
+ * suggestions are asked for, in the background, so it costs nothing at startup. From then on the
+ * best completions are looked up in a {@link SearchHistoryTrie} kept in memory, fast enough to
+ * run on the main thread on every keystroke.
+ *
+ * Every method must be called on the main thread, which is the only one touching the trie. Disk
+ * reads and writes run in order in the {@link BookExecutor.Lane#HISTORY} lane, and their changes
+ * are applied to the trie back on the main thread, in the same order.
+ */
+public final class SearchHistory extends SQLiteOpenHelper {
+
+    /**
+     * Listener for the history finishing loading, so suggestions asked for before can be asked
+     * for again.
+     */
+    public interface OnLoadedListener {
+
+        /**
+         * Called on the main thread once the history has loaded.
+         */
+        void onHistoryLoaded();
+    }
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = SearchHistory.class.getName();
+
+    /** Name of the database file */
+    private static final String DATABASE_NAME = "history.db";
+
+    /** Version of the database schema */
+    private static final int DATABASE_VERSION = 1;
+
+    /** Maximum amount of queries kept; those with the lowest scores are forgotten first */
+    private static final int MAX_QUERIES = 50000;
+
+    private static final String TABLE_HISTORY = "history";
+
+    private static final String COLUMN_QUERY_KEY = "query_key";
+    private static final String COLUMN_QUERY = "query";
+    private static final String COLUMN_USE_COUNT = "use_count";
+    private static final String COLUMN_LAST_USED = "last_used";
+    private static final String COLUMN_SCORE = "score";
+
+    /** Columns of the suggestion cursors, as expected by SearchView */
+    private static final String[] SUGGESTION_COLUMNS =
+            {BaseColumns._ID, SearchManager.SUGGEST_COLUMN_TEXT_1};
+
+    /** Single instance of the history, shared by every activity */
+    private static SearchHistory sInstance;
+
+    /** Executor reading and writing the history in the background */
+    private final BookExecutor mExecutor = BookExecutor.getInstance();
+
+    /** Handler used to apply changes read or written in the background on the main thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Queries of the history in memory, or null until loaded */
+    private SearchHistoryTrie mTrie;
+
+    /** Whether the history was asked to load already */
+    private boolean mIsLoadStarted;
+
+    /** Listener for the history finishing loading, or null */
+    private OnLoadedListener mLoadedListener;
+
+    /**
+     * Returns the single {@link SearchHistory} instance, creating it if needed. Creating it
+     * doesn't touch the disk.
+     *
+     * @param context any context, only its application context is kept
+     */
+    public static synchronized SearchHistory getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SearchHistory(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private SearchHistory(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_HISTORY + " ("
+                + COLUMN_QUERY_KEY + " TEXT PRIMARY KEY, "
+                + COLUMN_QUERY + " TEXT NOT NULL, "
+                + COLUMN_USE_COUNT + " INTEGER NOT NULL, "
+                + COLUMN_LAST_USED + " INTEGER NOT NULL, "
+                + COLUMN_SCORE + " REAL NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // There is no older schema to migrate from yet
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_HISTORY);
+        onCreate(db);
+    }
+
+    /**
+     * Set the listener for the history finishing loading.
+     *
+     * @param listener listener to call, or null to stop calling the previous one
+     */
+    public void setOnLoadedListener(OnLoadedListener listener) {
+        mLoadedListener = listener;
+    }
+
+    /**
+     * Returns the past queries that best complete the given text, as a cursor for the
+     * suggestions of a SearchView. Until the history has loaded, which the first call starts,
+     * there are none.
+     *
+     * @param text text typed by the user
+     * @param limit maximum amount of suggestions
+     */
+    public Cursor getSuggestions(String text, int limit) {
+        MatrixCursor cursor = new MatrixCursor(SUGGESTION_COLUMNS, limit);
+        if (mTrie == null) {
+            load();
+            return cursor;
+        }
+
+        List<String> completions = mTrie.complete(text, limit);
+        for (int i = 0; i < completions.size(); i++) {
+            cursor.addRow(new Object[] {i, completions.get(i)});
+        }
+        return cursor;
+    }
+
+    /**
+     * Record that the user submitted the given query, raising its score.
+     *
+     * @param query query as the user typed it
+     */
+    public void record(final String query) {
+        final String key = SearchHistoryTrie.normalize(query, false);
+        if (key.isEmpty()) {
+            return;
+        }
+        final long timeMillis = System.currentTimeMillis();
+        mExecutor.execute(BookExecutor.Lane.HISTORY, new Runnable() {
+            @Override
+            public void run() {
+                final double score;
+                try {
+                    score = write(key, query.trim(), timeMillis);
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Problem saving the search history.", e);
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Before the history has loaded, the load reads the new score from disk
+                        if (mTrie != null) {
+                            mTrie.put(query, score);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Start loading the history in the background, unless it was started already.
+     */
+    private void load() {
+        if (mIsLoadStarted) {
+            return;
+        }
+        mIsLoadStarted = true;
+        mExecutor.execute(BookExecutor.Lane.HISTORY, new Runnable() {
+            @Override
+            public void run() {
+                final SearchHistoryTrie trie = new SearchHistoryTrie();
+                try {
+                    read(trie);
+                } catch (RuntimeException e) {
+                    // Suggest nothing rather than asking the disk again on every keystroke
+                    Log.e(LOG_TAG, "Problem loading the search history.", e);
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mTrie = trie;
+                        Log.i(LOG_TAG, "Search history loaded: " + trie.size() + " queries.");
+                        if (mLoadedListener != null) {
+                            mLoadedListener.onHistoryLoaded();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Read the best scored queries into the given trie, forgetting the others. Must not be called
+     * on the main thread.
+     */
+    private void read(SearchHistoryTrie trie) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete(TABLE_HISTORY, COLUMN_QUERY_KEY + " NOT IN (SELECT " + COLUMN_QUERY_KEY
+                + " FROM " + TABLE_HISTORY + " ORDER BY " + COLUMN_SCORE + " DESC LIMIT "
+                + MAX_QUERIES + ")", null);
+
+        Cursor cursor = db.query(TABLE_HISTORY, new String[] {COLUMN_QUERY, COLUMN_SCORE},
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                trie.put(cursor.getString(0), cursor.getDouble(1));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Store one more use of a query, and returns its new score. Must not be called on the main
+     * thread.
+     */
+    private double write(String key, String query, long timeMillis) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            int useCount = 0;
+            double score = Double.NEGATIVE_INFINITY;
+            Cursor cursor = db.query(TABLE_HISTORY, new String[] {COLUMN_USE_COUNT, COLUMN_SCORE},
+                    COLUMN_QUERY_KEY + " = ?", new String[] {key}, null, null, null);
+            try {
+                if (cursor.moveToFirst()) {
+                    useCount = cursor.getInt(0);
+                    score = cursor.getDouble(1);
+                }
+            } finally {
+                cursor.close();
+            }
+            score = SearchHistoryTrie.addUse(score, timeMillis);
+
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_QUERY_KEY, key);
+            values.put(COLUMN_QUERY, query);
+            values.put(COLUMN_USE_COUNT, useCount + 1);
+            values.put(COLUMN_LAST_USED, timeMillis);
+            values.put(COLUMN_SCORE, score);
+            db.insertWithOnConflict(TABLE_HISTORY, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+            return score;
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
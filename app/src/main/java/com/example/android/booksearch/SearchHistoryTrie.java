@@ -0,0 +1,266 @@
+package com.example.android.booksearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Past queries in a compressed prefix trie, answering the most relevant completions of what the
+ * user is typing.
+ *
+ * Queries are keyed by their normalized text, lowercased with runs of spaces collapsed. Each edge
+ * of the trie holds a whole run of characters, so the trie has at most about two nodes per query
+ * whatever their length. Every node keeps the best score in its subtree, so the best completions
+ * are found best first, visiting little more than the nodes on their paths, instead of every
+ * query starting with the prefix.
+ *
+ * Queries are ranked by frecency: every use adds a weight that halves every
+ * {@link #HALF_LIFE_MILLIS}. All scores decay at the same rate, so instead of decaying them as
+ * time passes, each use weighs twice as much as one a half-life earlier; scores only grow, and
+ * are kept as logarithms so they never overflow.
+ */
+final class SearchHistoryTrie {
+
+    /** Time for the weight of a use to halve, relative to a new use: 30 days */
+    static final long HALF_LIFE_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    /** Runs of whitespace, collapsed to a single space */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /** Root of the trie, with an empty label */
+    private final Node mRoot = new Node("");
+
+    /** Amount of queries in the trie */
+    private int mSize;
+
+    /**
+     * Returns the score of a query after one more use, given its score before.
+     *
+     * @param score score before, or {@link Double#NEGATIVE_INFINITY} for a new query
+     * @param timeMillis time of the use
+     */
+    static double addUse(double score, long timeMillis) {
+        // Logarithm of the weight of the use, 2^(time / half-life)
+        double use = Math.log(2) * timeMillis / HALF_LIFE_MILLIS;
+
+        // Logarithm of the sum of both weights
+        double max = Math.max(score, use);
+        return max + Math.log1p(Math.exp(Math.min(score, use) - max));
+    }
+
+    /**
+     * Returns the key of a query: lowercased, without leading spaces and with runs of spaces
+     * collapsed. Trailing spaces are removed too, unless completing as the user types, since a
+     * space there ends a word.
+     */
+    static String normalize(String query, boolean keepTrailingSpace) {
+        String normalized = WHITESPACE.matcher(query.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        int start = normalized.startsWith(" ") ? 1 : 0;
+        int end = normalized.length();
+        if (!keepTrailingSpace && end > start && normalized.endsWith(" ")) {
+            end--;
+        }
+        return normalized.substring(start, Math.max(start, end));
+    }
+
+    /**
+     * Returns the amount of queries in the trie.
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Add a query with the given score, or update the score of a query with the same key. The
+     * query is shown as given the last time it was put. Scores must never go down, which uses
+     * never do.
+     *
+     * @param query query as the user typed it
+     * @param score score of the query, from {@link #addUse(double, long)}
+     */
+    void put(String query, double score) {
+        String key = normalize(query, false);
+        if (key.isEmpty()) {
+            return;
+        }
+
+        Node node = mRoot;
+        int position = 0;
+        while (true) {
+            node.mBestScore = Math.max(node.mBestScore, score);
+            if (position == key.length()) {
+                if (node.mQuery == null) {
+                    mSize++;
+                }
+                node.mQuery = query.trim();
+                node.mScore = score;
+                return;
+            }
+
+            int childIndex = node.indexOfChild(key.charAt(position));
+            if (childIndex < 0) {
+                Node leaf = new Node(key.substring(position));
+                leaf.mQuery = query.trim();
+                leaf.mScore = score;
+                leaf.mBestScore = score;
+                node.addChild(leaf);
+                mSize++;
+                return;
+            }
+
+            Node child = node.mChildren[childIndex];
+            int common = commonPrefixLength(child.mLabel, key, position);
+            if (common < child.mLabel.length()) {
+                // The key leaves the label midway: split the edge where it does
+                Node split = new Node(child.mLabel.substring(0, common));
+                split.mBestScore = child.mBestScore;
+                child.mLabel = child.mLabel.substring(common);
+                split.addChild(child);
+                node.mChildren[childIndex] = split;
+                child = split;
+            }
+            node = child;
+            position += common;
+        }
+    }
+
+    /**
+     * Returns the best ranked queries starting with the given prefix, best first.
+     *
+     * @param prefix text typed by the user
+     * @param limit maximum amount of queries to return
+     */
+    List<String> complete(String prefix, int limit) {
+        List<String> completions = new ArrayList<>(limit);
+        String key = normalize(prefix, true);
+        if (key.isEmpty()) {
+            return completions;
+        }
+
+        // Find the node whose subtree holds every query starting with the prefix
+        Node node = mRoot;
+        int position = 0;
+        while (position < key.length()) {
+            int childIndex = node.indexOfChild(key.charAt(position));
+            if (childIndex < 0) {
+                return completions;
+            }
+            Node child = node.mChildren[childIndex];
+            int common = commonPrefixLength(child.mLabel, key, position);
+            if (position + common < key.length() && common < child.mLabel.length()) {
+                return completions;
+            }
+            node = child;
+            position += common;
+        }
+
+        // Best first: a subtree is only opened once nothing found so far can beat its best
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(16, BEST_FIRST);
+        candidates.add(new Candidate(node, false, node.mBestScore));
+        while (!candidates.isEmpty() && completions.size() < limit) {
+            Candidate candidate = candidates.poll();
+            if (candidate.mIsQuery) {
+                completions.add(candidate.mNode.mQuery);
+                continue;
+            }
+            Node subtree = candidate.mNode;
+            if (subtree.mQuery != null) {
+                candidates.add(new Candidate(subtree, true, subtree.mScore));
+            }
+            for (int i = 0; i < subtree.mChildCount; i++) {
+                Node child = subtree.mChildren[i];
+                candidates.add(new Candidate(child, false, child.mBestScore));
+            }
+        }
+        return completions;
+    }
+
+    /**
+     * Returns the length of the common prefix of a label and the key from the given position.
+     */
+    private static int commonPrefixLength(String label, String key, int position) {
+        int length = Math.min(label.length(), key.length() - position);
+        int common = 0;
+        while (common < length && label.charAt(common) == key.charAt(position + common)) {
+            common++;
+        }
+        return common;
+    }
+
+    /** Orders candidates by score, best first */
+    private static final Comparator<Candidate> BEST_FIRST = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate a, Candidate b) {
+            return Double.compare(b.mScore, a.mScore);
+        }
+    };
+
+    /**
+     * Node of the trie, reached through an edge labelled with one or more characters.
+     */
+    private static final class Node {
+
+        /** Characters of the edge leading to this node; never empty except for the root */
+        String mLabel;
+
+        /** Query ending at this node, as the user typed it, or null if none does */
+        String mQuery;
+
+        /** Score of the query ending at this node */
+        double mScore = Double.NEGATIVE_INFINITY;
+
+        /** Best score of the queries in the subtree of this node, this one included */
+        double mBestScore = Double.NEGATIVE_INFINITY;
+
+        /** Child nodes, the first mChildCount of them used; their labels start differently */
+        Node[] mChildren;
+
+        /** Amount of child nodes */
+        int mChildCount;
+
+        Node(String label) {
+            mLabel = label;
+        }
+
+        /**
+         * Returns the index of the child whose label starts with the given character, or -1.
+         */
+        int indexOfChild(char first) {
+            for (int i = 0; i < mChildCount; i++) {
+                if (mChildren[i].mLabel.charAt(0) == first) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void addChild(Node child) {
+            if (mChildren == null) {
+                mChildren = new Node[2];
+            } else if (mChildCount == mChildren.length) {
+                mChildren = Arrays.copyOf(mChildren, mChildCount * 2);
+            }
+            mChildren[mChildCount++] = child;
+        }
+    }
+
+    /**
+     * Subtree, or query, waiting to be visited with its score.
+     */
+    private static final class Candidate {
+
+        final Node mNode;
+        final boolean mIsQuery;
+        final double mScore;
+
+        Candidate(Node node, boolean isQuery, double score) {
+            mNode = node;
+            mIsQuery = isQuery;
+            mScore = score;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.android.booksearch;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.http.HttpResponseCache;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+import com.squareup.picasso.UrlConnectionDownloader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads book thumbnails into list items, and prefetches those of the rows about to scroll into
+ * view so they are usually in memory by the time their row binds.
+ *
+ * Thumbnails are decoded straight to the size of the thumbnail view, without alpha, and kept in
+ * a memory cache bounded in bytes, so bitmap memory stays the same however many rows are
+ * scrolled. Downloaded images are kept in an HTTP response cache on disk, also bounded in bytes.
+ * Prefetches run at low priority, so they never hold up the thumbnails of rows on screen, and
+ * those of an old query are cancelled when the list is replaced. They are started from the
+ * thumbnail lane of the {@link BookExecutor}, which bounds how many are downloading at once and
+ * drops the oldest ones waiting, for rows already scrolled past, when too many are queued.
+ */
+public final class ThumbnailLoader {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    /** Name of the directory of the disk cache, inside the app's cache directory */
+    private static final String DISK_CACHE_DIR = "thumbnails";
+
+    /** Maximum size of the disk cache, in bytes */
+    private static final long DISK_CACHE_BYTES = 10 * 1024 * 1024;
+
+    /** Fraction of the app's memory class given to the memory cache */
+    private static final int MEMORY_CACHE_FRACTION = 8;
+
+    /** Tag of every prefetch request, used to cancel them all at once */
+    private static final Object PREFETCH_TAG = new Object();
+
+    /** Maximum time a prefetch keeps its place in the thumbnail lane, in milliseconds */
+    private static final long PREFETCH_TIMEOUT_MILLIS = 15000;
+
+    /** Single instance of the loader, shared by every list */
+    private static ThumbnailLoader sInstance;
+
+    /** Picasso instance with the caches of this loader */
+    private final Picasso mPicasso;
+
+    /** Width thumbnails are decoded to, in pixels */
+    private final int mWidth;
+
+    /** Height thumbnails are decoded to, in pixels */
+    private final int mHeight;
+
+    /** Executor whose thumbnail lane starts the prefetches */
+    private final BookExecutor mExecutor = BookExecutor.getInstance();
+
+    /** Prefetches started and not finished yet */
+    private final Set<PrefetchTask> mRunningPrefetches = new HashSet<>();
+
+    /**
+     * Returns the single {@link ThumbnailLoader} instance, creating it if needed.
+     *
+     * @param context any context, only its application context is kept
+     */
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ThumbnailLoader(Context context) {
+        // Picasso's downloader uses the installed HTTP response cache, if any, so install one of
+        // the chosen size first
+        if (HttpResponseCache.getInstalled() == null) {
+            try {
+                HttpResponseCache.install(new File(context.getCacheDir(), DISK_CACHE_DIR),
+                        DISK_CACHE_BYTES);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem installing the thumbnail disk cache.", e);
+            }
+        }
+
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryCacheBytes =
+                activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CACHE_FRACTION;
+
+        mPicasso = new Picasso.Builder(context)
+                .memoryCache(new LruCache(memoryCacheBytes))
+                .downloader(new UrlConnectionDownloader(context))
+                .build();
+
+        mWidth = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_width);
+        mHeight = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_height);
+
+        Log.i(LOG_TAG, "Thumbnails decoded to " + mWidth + "x" + mHeight + ", memory cache "
+                + memoryCacheBytes / 1024 + " KB.");
+    }
+
+    /**
+     * Load the thumbnail at the given URL into a list item's image view, at high priority. Any
+     * request for a previous thumbnail of the same view is cancelled.
+     *
+     * @param url thumbnail URL, or null to only clear the view
+     * @param imageView image view of the list item
+     */
+    public void load(String url, ImageView imageView) {
+        request(url)
+                .priority(Picasso.Priority.HIGH)
+                .into(imageView);
+    }
+
+    /**
+     * Cancel the request for the thumbnail of an image view, once its list item scrolled away.
+     *
+     * @param imageView image view of the list item
+     */
+    public void cancel(ImageView imageView) {
+        mPicasso.cancelRequest(imageView);
+    }
+
+    /**
+     * Download and decode the thumbnail at the given URL into the memory cache, at low priority,
+     * so it shows right away once its list item binds. The prefetch waits for its turn in the
+     * thumbnail lane of the {@link BookExecutor}, and may be dropped there.
+     *
+     * @param url thumbnail URL
+     */
+    public void prefetch(String url) {
+        mExecutor.execute(BookExecutor.Lane.THUMBNAIL_PREFETCH, new PrefetchTask(url));
+    }
+
+    /**
+     * Returns a request for the thumbnail at the given URL, decoded to the size of the thumbnail
+     * view without alpha. Loads and prefetches share these settings, so that a prefetched bitmap
+     * has the same memory cache key as the load that uses it.
+     */
+    private RequestCreator request(String url) {
+        return mPicasso.load(url)
+                .resize(mWidth, mHeight)
+                .centerInside()
+                .onlyScaleDown()
+                .config(Bitmap.Config.RGB_565);
+    }
+
+    /**
+     * Cancel every prefetch not done yet, for example because the list was replaced.
+     */
+    public void cancelPrefetches() {
+        mExecutor.clear(BookExecutor.Lane.THUMBNAIL_PREFETCH);
+        mPicasso.cancelTag(PREFETCH_TAG);
+
+        // Cancelled requests never call back, so give their places in the lane back
+        synchronized (mRunningPrefetches) {
+            for (PrefetchTask task : mRunningPrefetches) {
+                task.mDone.countDown();
+            }
+            mRunningPrefetches.clear();
+        }
+    }
+
+    /**
+     * Prefetch of a single thumbnail, which keeps its place in the thumbnail lane until the
+     * thumbnail is in the memory cache, failed or was cancelled.
+     */
+    private final class PrefetchTask implements Runnable, Callback {
+
+        /** Thumbnail URL */
+        final String mUrl;
+
+        /** Counted down once the prefetch is over */
+        final CountDownLatch mDone = new CountDownLatch(1);
+
+        PrefetchTask(String url) {
+            mUrl = url;
+        }
+
+        @Override
+        public void run() {
+            synchronized (mRunningPrefetches) {
+                mRunningPrefetches.add(this);
+            }
+            try {
+                request(mUrl)
+                        .priority(Picasso.Priority.LOW)
+                        .tag(PREFETCH_TAG)
+                        .fetch(this);
+                mDone.await(PREFETCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                synchronized (mRunningPrefetches) {
+                    mRunningPrefetches.remove(this);
+                }
+            }
+        }
+
+        @Override
+        public void onSuccess() {
+            mDone.countDown();
+        }
+
+        @Override
+        public void onError() {
+            mDone.countDown();
+        }
+    }
+}
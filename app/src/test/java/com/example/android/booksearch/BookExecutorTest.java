@@ -0,0 +1,115 @@
+package com.example.android.booksearch;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BookExecutor}.
+ */
+public class BookExecutorTest {
+
+    private final BookExecutor mExecutor = new BookExecutor();
+
+    /** Released at the end of every test, so blocked tasks don't outlive it */
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+    }
+
+    @Test
+    public void execute_boundsConcurrencyPerLane() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        mExecutor.execute(BookExecutor.Lane.PAGE_PREFETCH, blockingTask(firstStarted));
+        mExecutor.execute(BookExecutor.Lane.PAGE_PREFETCH, blockingTask(secondStarted));
+
+        assertTrue(firstStarted.await(1, TimeUnit.SECONDS));
+        assertFalse(secondStarted.await(100, TimeUnit.MILLISECONDS));
+
+        // Other lanes are not held up by a full one
+        CountDownLatch otherLaneStarted = new CountDownLatch(1);
+        mExecutor.execute(BookExecutor.Lane.REFRESH, blockingTask(otherLaneStarted));
+        assertTrue(otherLaneStarted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void execute_discardsOldestWhenQueueIsFull() throws Exception {
+        BookExecutor.Lane lane = BookExecutor.Lane.PAGE_PREFETCH;
+        mExecutor.execute(lane, blockingTask(new CountDownLatch(1)));
+
+        FutureTask<Void> oldest = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        });
+        mExecutor.execute(lane, oldest);
+        for (int i = 0; i < lane.getMaxQueueDepth(); i++) {
+            mExecutor.execute(lane, blockingTask(new CountDownLatch(1)));
+        }
+
+        assertTrue(oldest.isCancelled());
+        assertEquals(1, mExecutor.getDiscardedCount(lane));
+    }
+
+    @Test
+    public void execute_interactiveWins() throws Exception {
+        BookExecutor.Lane lane = BookExecutor.Lane.INTERACTIVE;
+        for (int i = 0; i < lane.getMaxConcurrency(); i++) {
+            mExecutor.execute(lane, blockingTask(new CountDownLatch(1)));
+        }
+        CountDownLatch queuedInteractiveStarted = new CountDownLatch(1);
+        mExecutor.execute(lane, blockingTask(queuedInteractiveStarted));
+
+        // Nothing less urgent starts while an interactive task is waiting
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        mExecutor.execute(BookExecutor.Lane.REFRESH, blockingTask(refreshStarted));
+        assertFalse(refreshStarted.await(100, TimeUnit.MILLISECONDS));
+
+        mRelease.countDown();
+        assertTrue(queuedInteractiveStarted.await(1, TimeUnit.SECONDS));
+        assertTrue(refreshStarted.await(1, TimeUnit.SECONDS));
+        assertTrue(mExecutor.getQueueWait(BookExecutor.Lane.REFRESH).getPercentile(1) >= 100);
+    }
+
+    @Test
+    public void remove_queuedTask() throws Exception {
+        BookExecutor.Lane lane = BookExecutor.Lane.PAGE_PREFETCH;
+        mExecutor.execute(lane, blockingTask(new CountDownLatch(1)));
+        CountDownLatch removedStarted = new CountDownLatch(1);
+        Runnable removed = blockingTask(removedStarted);
+        mExecutor.execute(lane, removed);
+
+        assertTrue(mExecutor.remove(lane, removed));
+        assertFalse(mExecutor.remove(lane, removed));
+        mRelease.countDown();
+        assertFalse(removedStarted.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Returns a task that counts down the given latch once started, then blocks until the test
+     * releases it.
+     */
+    private Runnable blockingTask(final CountDownLatch started) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.booksearch;
+
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookPage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BookIndex}.
+ */
+public class BookIndexTest {
+
+    private BookIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new BookIndex();
+        mIndex.addAll(Arrays.asList(
+                book("1", "The Hobbit", "J. R. R. Tolkien", 2000),
+                book("2", "The Fellowship of the Ring", "J. R. R. Tolkien", 1500),
+                book("3", "Tolkien: A Biography", "Humphrey Carpenter", 100),
+                book("4", "Cien a\u00f1os de soledad", "Gabriel Garc\u00eda M\u00e1rquez", 900)));
+    }
+
+    @Test
+    public void tokenize_normalizesCaseAndAccents() {
+        assertArrayEquals(new String[] {"gabriel", "garcia", "marquez"},
+                BookIndex.tokenize("Gabriel  Garc\u00eda-M\u00e1rquez"));
+    }
+
+    @Test
+    public void search_matchesPrefixesOfEveryTerm() {
+        assertEquals(Arrays.asList("1", "2"), ids(mIndex.search("tolk the", 10)));
+        assertEquals(Arrays.asList("4"), ids(mIndex.search("garcia ANOS", 10)));
+        assertTrue(ids(mIndex.search("tolkien dragon", 10)).isEmpty());
+    }
+
+    @Test
+    public void search_ranksTitleMatchesFirst() {
+        BookPage page = mIndex.search("tolkien", 10);
+        assertEquals(3, page.getTotalItems());
+        assertEquals("3", ids(page).get(0));
+    }
+
+    @Test
+    public void search_respectsLimit() {
+        BookPage page = mIndex.search("t", 1);
+        assertEquals(1, page.getBooks().size());
+        assertEquals(3, page.getTotalItems());
+    }
+
+    @Test
+    public void addAll_replacesBooksWithTheSameId() {
+        mIndex.addAll(Arrays.asList(book("1", "The Hobbit", "J. R. R. Tolkien", 2001)));
+        assertEquals(4, mIndex.size());
+        assertEquals(2001, mIndex.search("hobbit", 10).getBooks().get(0).getRatingsCount());
+    }
+
+    private static Book book(String id, String title, String author, int ratingsCount) {
+        return new Book(id, title, new ArrayList<>(Arrays.asList(author)), 4.0, ratingsCount,
+                "https://books.google.com/" + id, "https://books.google.com/thumb/" + id);
+    }
+
+    private static List<String> ids(BookPage page) {
+        List<String> ids = new ArrayList<>();
+        for (Book book : page.getBooks()) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.android.booksearch;
+
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookPage;
+import com.example.android.booksearch.core.BookQueryResult;
+import com.example.android.booksearch.core.CancellationSignal;
+import com.example.android.booksearch.core.OperationCanceledException;
+
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PageFanOut}, fetching from a fake page source whose later pages
+ * complete first.
+ */
+public class PageFanOutTest {
+
+    private static final int PAGE_SIZE = 3;
+    private static final int TOTAL_ITEMS = 13;
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void fetch_mergesPagesInRankOrder() {
+        FakeSource source = new FakeSource(-1);
+        PageFanOut fanOut = new PageFanOut(mExecutor, 4, PAGE_SIZE);
+        BookQueryResult result = fanOut.fetch(source, 4, null, null);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(Arrays.asList("0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11"),
+                ids(result.getPage()));
+        assertEquals(TOTAL_ITEMS, result.getPage().getTotalItems());
+        assertEquals(12, fanOut.getNextStartIndex());
+        assertTrue(source.mMaxRunning.get() > 1);
+    }
+
+    @Test
+    public void fetch_handsOutFirstPagesEarly() {
+        FakeSource source = new FakeSource(-1);
+        source.mEarlierPagesFirst = true;
+        final List<List<String>> partials = new ArrayList<>();
+        BookQueryResult result = new PageFanOut(mExecutor, 4, PAGE_SIZE).fetch(source, 4, null,
+                new PageFanOut.Listener() {
+                    @Override
+                    public void onPagesMerged(BookPage booksSoFar) {
+                        partials.add(ids(booksSoFar));
+                    }
+                });
+
+        assertEquals(Arrays.asList(Arrays.asList("0", "1", "2"),
+                Arrays.asList("0", "1", "2", "3", "4", "5"),
+                Arrays.asList("0", "1", "2", "3", "4", "5", "6", "7", "8")), partials);
+        assertEquals(12, result.getPage().getBooks().size());
+    }
+
+    @Test
+    public void fetch_dropsDuplicatesAndStopsAtTheEnd() {
+        FakeSource source = new FakeSource(-1);
+        source.mDuplicateFirstBook = true;
+        BookQueryResult result =
+                new PageFanOut(mExecutor, 2, PAGE_SIZE).fetch(source, 10, null, null);
+
+        // Books 0 to 12, the duplicates of book 0 dropped, and no pages past the end requested
+        assertEquals(TOTAL_ITEMS, result.getPage().getBooks().size());
+        assertTrue(source.mMaxRunning.get() <= 2);
+        assertTrue(source.mRequests.get() <= 6);
+    }
+
+    @Test
+    public void fetch_keepsPagesBeforeAFailure() {
+        PageFanOut fanOut = new PageFanOut(mExecutor, 4, PAGE_SIZE);
+        BookQueryResult result = fanOut.fetch(new FakeSource(2), 4, null, null);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(6, result.getPage().getBooks().size());
+        assertEquals(6, fanOut.getNextStartIndex());
+    }
+
+    @Test
+    public void fetch_failsWhenTheFirstPageFails() {
+        BookQueryResult result =
+                new PageFanOut(mExecutor, 4, PAGE_SIZE).fetch(new FakeSource(0), 4, null, null);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(500, result.getResponseCode());
+    }
+
+    @Test
+    public void fetch_cancelAbortsEveryPageRunning() throws Exception {
+        final CountDownLatch started = new CountDownLatch(3);
+        final AtomicInteger aborted = new AtomicInteger();
+        PageFanOut.PageSource source = new PageFanOut.PageSource() {
+            @Override
+            public BookQueryResult loadPage(int startIndex, int pageSize,
+                                            CancellationSignal cancellationSignal) {
+                // Block like a connection until the request is aborted, as QueryUtils does
+                final CountDownLatch abort = new CountDownLatch(1);
+                cancellationSignal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+                    @Override
+                    public void onCancel() {
+                        aborted.incrementAndGet();
+                        abort.countDown();
+                    }
+                });
+                started.countDown();
+                try {
+                    abort.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    cancellationSignal.setOnCancelListener(null);
+                }
+                throw new OperationCanceledException();
+            }
+        };
+
+        final CancellationSignal signal = new CancellationSignal();
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                signal.cancel();
+            }
+        });
+        canceller.start();
+
+        try {
+            new PageFanOut(mExecutor, 3, PAGE_SIZE).fetch(source, 5, signal, null);
+            fail("Fetch finished although it was cancelled");
+        } catch (OperationCanceledException expected) {
+            canceller.join();
+        }
+
+        // Every page running was aborted, not only the one that registered its listener last
+        assertEquals(3, aborted.get());
+    }
+
+    private static List<String> ids(BookPage page) {
+        List<String> ids = new ArrayList<>();
+        for (Book book : page.getBooks()) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Page source of TOTAL_ITEMS books, where earlier pages take longer.
+     */
+    private static final class FakeSource implements PageFanOut.PageSource {
+
+        /** Page that fails with response code 500, or -1 */
+        private final int mFailingPage;
+
+        /** Whether every page starts with book 0 again */
+        boolean mDuplicateFirstBook;
+
+        /** Whether earlier pages take less time, instead of more */
+        boolean mEarlierPagesFirst;
+
+        final AtomicInteger mRunning = new AtomicInteger();
+        final AtomicInteger mMaxRunning = new AtomicInteger();
+        final AtomicInteger mRequests = new AtomicInteger();
+
+        FakeSource(int failingPage) {
+            mFailingPage = failingPage;
+        }
+
+        @Override
+        public BookQueryResult loadPage(int startIndex, int pageSize,
+                                        CancellationSignal cancellationSignal) {
+            mRequests.incrementAndGet();
+            int running = mRunning.incrementAndGet();
+            while (mMaxRunning.get() < running) {
+                mMaxRunning.compareAndSet(mMaxRunning.get(), running);
+            }
+            try {
+                Thread.sleep(mEarlierPagesFirst
+                        ? 10 + startIndex * 10 : Math.max(0, 40 - startIndex * 3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                mRunning.decrementAndGet();
+            }
+
+            if (startIndex / pageSize == mFailingPage) {
+                return new BookQueryResult(500, null, 0, null);
+            }
+            List<Book> books = new ArrayList<>();
+            if (mDuplicateFirstBook && startIndex > 0) {
+                books.add(book(0));
+            }
+            for (int i = startIndex; i < Math.min(startIndex + pageSize, TOTAL_ITEMS); i++) {
+                books.add(book(i));
+            }
+            return new BookQueryResult(HttpURLConnection.HTTP_OK, new BookPage(books, TOTAL_ITEMS),
+                    0, null);
+        }
+
+        private static Book book(int i) {
+            return new Book(String.valueOf(i), "Book " + i, new ArrayList<String>(), 4.0, 10,
+                    "https://books.google.com/books?id=" + i, "https://books.google.com/t/" + i);
+        }
+    }
+}
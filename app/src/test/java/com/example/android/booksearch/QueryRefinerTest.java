@@ -0,0 +1,67 @@
+package com.example.android.booksearch;
+
+import com.example.android.booksearch.core.Book;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link QueryRefiner}.
+ */
+public class QueryRefinerTest {
+
+    private final List<Book> mTolkienBooks = Arrays.asList(
+            book("1", "The Fellowship of the Ring", "J. R. R. Tolkien"),
+            book("2", "Tolkien and the Hobbits", "Humphrey Carpenter"),
+            book("3", "The Hobbit", "J. R. R. Tolkien"),
+            book("4", "The Silmarillion", "J. R. R. Tolkien"),
+            book("5", "The Hobbit Companion", "David Day"));
+
+    @Test
+    public void isRefinement_whenEveryTermIsKept() {
+        assertTrue(QueryRefiner.isRefinement("tolkien", "tolkien hobbit"));
+        assertTrue(QueryRefiner.isRefinement("Tolk", "hobbit tolkien"));
+        assertTrue(QueryRefiner.isRefinement("tolkien", "T\u00f3lkien"));
+        assertFalse(QueryRefiner.isRefinement("tolkien hobbit", "tolkien"));
+        assertFalse(QueryRefiner.isRefinement("tolkien", "lewis"));
+        assertFalse(QueryRefiner.isRefinement(null, "tolkien"));
+    }
+
+    @Test
+    public void refine_keepsMatchesOfEveryTerm() {
+        // Both score a whole title match and a weaker one, so they keep the order of the server
+        List<Book> refined = QueryRefiner.refine(mTolkienBooks, "tolkien hobbit");
+        assertEquals(Arrays.asList("2", "3"), ids(refined));
+    }
+
+    @Test
+    public void refine_ranksTitleAndWholeMatchesFirst() {
+        // Exact title matches first, in the order of the server, then the title prefix match
+        List<Book> refined = QueryRefiner.refine(mTolkienBooks, "hobbit");
+        assertEquals(Arrays.asList("3", "5", "2"), ids(refined));
+    }
+
+    @Test
+    public void refine_noMatches() {
+        assertTrue(QueryRefiner.refine(mTolkienBooks, "tolkien dragon").isEmpty());
+        assertTrue(QueryRefiner.refine(mTolkienBooks, " ").isEmpty());
+    }
+
+    private static Book book(String id, String title, String author) {
+        return new Book(id, title, new ArrayList<>(Arrays.asList(author)), -1, -1,
+                "http://books.google.com/books?id=" + id, null);
+    }
+
+    private static List<String> ids(List<Book> books) {
+        List<String> ids = new ArrayList<>();
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.android.booksearch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SearchHistoryTrie}.
+ */
+public class SearchHistoryTrieTest {
+
+    /** Some time in 2018, in milliseconds */
+    private static final long NOW = 1520000000000L;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    @Test
+    public void complete_ranksByScore() {
+        SearchHistoryTrie trie = new SearchHistoryTrie();
+        trie.put("tolkien", 1);
+        trie.put("Tolkien Hobbit", 3);
+        trie.put("tolstoy", 2);
+        trie.put("lewis", 4);
+
+        assertEquals(Arrays.asList("Tolkien Hobbit", "tolstoy", "tolkien"),
+                trie.complete("to", 10));
+        assertEquals(Arrays.asList("Tolkien Hobbit", "tolkien"), trie.complete("TOLK", 10));
+        assertEquals(Arrays.asList("Tolkien Hobbit"), trie.complete("tolkien  ", 10));
+        assertEquals(Arrays.asList("Tolkien Hobbit", "tolstoy"), trie.complete("to", 2));
+        assertEquals(Collections.emptyList(), trie.complete("tolkiens", 10));
+        assertEquals(Collections.emptyList(), trie.complete(" ", 10));
+        assertEquals(4, trie.size());
+    }
+
+    @Test
+    public void put_sameKeyUpdatesQuery() {
+        SearchHistoryTrie trie = new SearchHistoryTrie();
+        trie.put("the hobbit", 1);
+        trie.put("  The   Hobbit ", 2);
+
+        assertEquals(1, trie.size());
+        assertEquals(Arrays.asList("The   Hobbit"), trie.complete("the h", 10));
+    }
+
+    @Test
+    public void addUse_weighsFrequencyAndRecency() {
+        double old = Double.NEGATIVE_INFINITY;
+        // Used three times two months ago, against once yesterday
+        for (int i = 0; i < 3; i++) {
+            old = SearchHistoryTrie.addUse(old, NOW - 60 * DAY_MILLIS + i);
+        }
+        double recent = SearchHistoryTrie.addUse(Double.NEGATIVE_INFINITY, NOW - DAY_MILLIS);
+        assertTrue(recent > old);
+
+        // Used three times last month, against once yesterday
+        double frequent = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 3; i++) {
+            frequent = SearchHistoryTrie.addUse(frequent, NOW - 30 * DAY_MILLIS + i);
+        }
+        assertTrue(frequent > recent);
+    }
+
+    @Test
+    public void complete_matchesBruteForce() {
+        Random random = new Random(42);
+        SearchHistoryTrie trie = new SearchHistoryTrie();
+        String[] queries = new String[2000];
+        double[] scores = new double[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            StringBuilder query = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                query.append((char) ('a' + random.nextInt(3)));
+            }
+            queries[i] = query.toString();
+            scores[i] = i;
+            trie.put(queries[i], scores[i]);
+        }
+
+        for (String prefix : Arrays.asList("a", "ab", "cab", "bbb")) {
+            // Latest put of each query that starts with the prefix, best first
+            List<String> expected = new ArrayList<>();
+            for (int i = queries.length - 1; i >= 0 && expected.size() < 5; i--) {
+                if (queries[i].startsWith(prefix) && !expected.contains(queries[i])) {
+                    expected.add(queries[i]);
+                }
+            }
+            assertEquals(expected, trie.complete(prefix, 5));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.booksearch.benchmarks;
+
+import com.example.android.booksearch.core.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the heap each {@link Book} keeps, on the JVM. Books are built the way the parser
+ * builds them, from fresh copies of every string, and kept until the heap is measured. The
+ * measurement relies on System.gc(), so it is only a rough figure, not a test:
+ *     ./gradlew :benchmarks:footprint
+ */
+public final class BookFootprint {
+
+    /** Amount of books measured, enough for the noise of the heap measurement to even out */
+    private static final int BOOK_COUNT = 20000;
+
+    /** Amount of measurements, the smallest of which is reported */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link BookFootprint}
+     * object. This class is only meant to hold static methods.
+     */
+    private BookFootprint() {
+    }
+
+    public static void main(String[] args) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = usedMemory();
+            List<Book> books = new ArrayList<>(BOOK_COUNT);
+            for (int i = 0; i < BOOK_COUNT; i++) {
+                books.add(parsedBook(i));
+            }
+            long bytesPerBook = (usedMemory() - before) / BOOK_COUNT;
+
+            // Keep the books reachable until they were measured
+            if (books.size() != BOOK_COUNT) {
+                throw new AssertionError();
+            }
+            best = Math.min(best, bytesPerBook);
+        }
+        System.out.println(String.format(Locale.US, "%d bytes per book, over %d books", best,
+                BOOK_COUNT));
+    }
+
+    /**
+     * Returns a book like the parser creates: every string is a new copy, as read from JSON, and
+     * authors repeat across books.
+     */
+    private static Book parsedBook(int i) {
+        String id = "vol" + Integer.toString(i, 36) + "AAAAJ";
+        ArrayList<String> authors = new ArrayList<>();
+        authors.add(new String("J. R. R. Tolkien"));
+        if (i % 3 == 0) {
+            authors.add(new String("Christopher Tolkien"));
+        }
+        return new Book(id, "The Lord of the Rings, volume " + i, authors, 4.5, i % 500,
+                "http://books.google.com/books?id=" + id + "&dq=tolkien&hl=&source=gbs_api",
+                "http://books.google.com/books/content?id=" + id
+                        + "&printsec=frontcover&img=1&zoom=5&edge=curl&source=gbs_api");
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
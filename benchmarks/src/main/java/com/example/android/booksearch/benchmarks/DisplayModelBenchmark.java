@@ -0,0 +1,56 @@
+package com.example.android.booksearch.benchmarks;
+
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookDisplayModel;
+import com.example.android.booksearch.core.BookJsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of the text a list item shows for each book of a full page, the work binding used
+ * to do on the main thread before it moved to {@link BookDisplayModel}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisplayModelBenchmark {
+
+    /** Books of a full page */
+    private List<Book> mBooks;
+
+    @Setup
+    public void setUp() throws IOException {
+        mBooks = BookJsonParser.parse(new ByteArrayInputStream(Fixtures.response(40)))
+                .getBooks();
+    }
+
+    /**
+     * Format the text of every book of the page.
+     */
+    @Benchmark
+    public void format(Blackhole blackhole) {
+        for (int i = 0; i < mBooks.size(); i++) {
+            Book book = mBooks.get(i);
+            blackhole.consume(new BookDisplayModel(book.getTitle(), book.getAuthors(),
+                    book.getRating(), book.getRatingsCount(), book.getSmallThumbnailUrl()));
+        }
+    }
+}
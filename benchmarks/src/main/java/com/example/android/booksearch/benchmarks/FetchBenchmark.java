@@ -0,0 +1,85 @@
+package com.example.android.booksearch.benchmarks;
+
+import com.example.android.booksearch.core.BookQueryResult;
+import com.example.android.booksearch.core.HttpTransport;
+import com.example.android.booksearch.core.QueryUtils;
+import com.example.android.booksearch.core.StubHttpServer;
+import com.example.android.booksearch.core.StubServerTransport;
+import com.example.android.booksearch.core.TransportConfig;
+import com.example.android.booksearch.core.UrlConnectionTransport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole query as the app fetches it, from a {@link StubHttpServer} on the loopback interface:
+ * request, gzipped response on a kept alive connection, decoding and parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetchBenchmark {
+
+    /** Amount of books in the response */
+    @Param({"10", "40", "400"})
+    public int mItemCount;
+
+    /** Server answering every query with the same response */
+    private StubHttpServer mServer;
+
+    /** Transport the app used before the benchmark */
+    private HttpTransport mAppTransport;
+
+    /** Query sent */
+    private final String mUrl = QueryUtils.buildQueryUrl("tolkien");
+
+    @Setup
+    public void setUp() throws IOException {
+        final StubHttpServer.Response response =
+                new StubHttpServer.Response(200, Fixtures.response(mItemCount));
+        mServer = new StubHttpServer(new StubHttpServer.Dispatcher() {
+            @Override
+            public StubHttpServer.Response dispatch(String target) {
+                return response;
+            }
+        });
+        // Size the connection pool as the app does at startup, before the first request
+        UrlConnectionTransport.configureConnectionPool(TransportConfig.DEFAULT);
+        mAppTransport = QueryUtils.getTransport();
+        QueryUtils.setTransport(new StubServerTransport(mServer, TransportConfig.DEFAULT));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        QueryUtils.setTransport(mAppTransport);
+        mServer.close();
+    }
+
+    /**
+     * Returns the result of fetching the query.
+     */
+    @Benchmark
+    public BookQueryResult fetch() {
+        BookQueryResult result = QueryUtils.fetchBookData(mUrl);
+        if (!result.isSuccessful()) {
+            throw new IllegalStateException("Query failed: " + result);
+        }
+        return result;
+    }
+}
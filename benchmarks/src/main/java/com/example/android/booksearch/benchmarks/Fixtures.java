@@ -0,0 +1,64 @@
+package com.example.android.booksearch.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Google Books responses the benchmarks run on, built from the recorded response of the unit
+ * tests so they have the same shape, missing fields included.
+ */
+final class Fixtures {
+
+    /** Charset of the responses, as sent by the Google Books API */
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Recorded response the books are taken from */
+    private static final String RECORDED_RESPONSE = "volumes_tolkien.json";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Returns the UTF-8 body of a response holding the given amount of books, repeating the
+     * books of the recorded response with ids of their own.
+     *
+     * @param itemCount amount of books in the response
+     */
+    static byte[] response(int itemCount) throws IOException {
+        JsonObject recorded;
+        InputStream inputStream = Fixtures.class.getClassLoader()
+                .getResourceAsStream(RECORDED_RESPONSE);
+        if (inputStream == null) {
+            throw new IOException("Missing resource " + RECORDED_RESPONSE);
+        }
+        try {
+            recorded = new JsonParser().parse(new InputStreamReader(inputStream, UTF_8))
+                    .getAsJsonObject();
+        } finally {
+            inputStream.close();
+        }
+
+        JsonArray recordedItems = recorded.getAsJsonArray("items");
+        JsonArray items = new JsonArray();
+        for (int i = 0; i < itemCount; i++) {
+            JsonObject item = recordedItems.get(i % recordedItems.size())
+                    .getAsJsonObject().deepCopy();
+            if (item.has("id")) {
+                item.addProperty("id", item.get("id").getAsString() + i);
+            }
+            items.add(item);
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("kind", "books#volumes");
+        response.addProperty("totalItems", Math.max(itemCount, 732));
+        response.add("items", items);
+        return response.toString().getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.android.booksearch.benchmarks;
+
+import com.example.android.booksearch.core.BookJsonParser;
+import com.example.android.booksearch.core.BookPage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and parsing of Google Books responses already in memory: a page of 10 books, a full
+ * page of 40 and a large response of 400.
+ *
+ * {@link #decode()} only turns the bytes into characters, the least any parser has to do, so
+ * the time {@link #parse()} takes on top of it is the cost of extracting the books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    /** Amount of books in the response */
+    @Param({"10", "40", "400"})
+    public int mItemCount;
+
+    /** Body of the response */
+    private byte[] mResponse;
+
+    /** Buffer the decoded characters are read into */
+    private final char[] mBuffer = new char[8192];
+
+    @Setup
+    public void setUp() throws IOException {
+        mResponse = Fixtures.response(mItemCount);
+    }
+
+    /**
+     * Returns the amount of characters in the response, decoding it as UTF-8.
+     */
+    @Benchmark
+    public int decode() throws IOException {
+        Reader reader = new InputStreamReader(new ByteArrayInputStream(mResponse),
+                Fixtures.UTF_8);
+        int length = 0;
+        int read;
+        while ((read = reader.read(mBuffer)) != -1) {
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the page of books in the response, decoding and parsing it as the app does.
+     */
+    @Benchmark
+    public BookPage parse() throws IOException {
+        return BookJsonParser.parse(new ByteArrayInputStream(mResponse));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.android.booksearch.benchmarks;
+
+import com.example.android.booksearch.core.Book;
+import com.example.android.booksearch.core.BookFilter;
+import com.example.android.booksearch.core.BookTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting and filtering the books loaded for a query on the device, as {@link BookTable} does
+ * off the main thread each time the user changes the order or the filters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark {
+
+    /** Amount of books loaded */
+    @Param({"400", "4000"})
+    public int mBookCount;
+
+    /** Books loaded, with ratings spread like those of Google Books */
+    private List<Book> mBooks;
+
+    /** Table of the books loaded */
+    private BookTable mTable;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mBooks = new ArrayList<>(mBookCount);
+        for (int i = 0; i < mBookCount; i++) {
+            // Most books have no ratings at all
+            boolean isRated = random.nextInt(3) == 0;
+            mBooks.add(new Book("id" + i, "Book " + i,
+                    new ArrayList<>(Arrays.asList("Author " + random.nextInt(200))),
+                    isRated ? 1 + random.nextInt(9) / 2.0 : -1,
+                    isRated ? random.nextInt(500) : -1,
+                    "http://books.google.com/books?id=id" + i, null));
+        }
+        mTable = BookTable.of(mBooks, null);
+    }
+
+    /**
+     * Lay the books out in columns, as when a new query loads.
+     */
+    @Benchmark
+    public BookTable build() {
+        return BookTable.of(mBooks, null);
+    }
+
+    /**
+     * Sort every book by rating.
+     */
+    @Benchmark
+    public List<Book> sortByRating() {
+        return mTable.select(BookFilter.NONE.withSortKey(BookFilter.SortKey.RATING));
+    }
+
+    /**
+     * Select the 20 books with the most ratings.
+     */
+    @Benchmark
+    public List<Book> topByRatingsCount() {
+        return mTable.select(BookFilter.NONE.withSortKey(BookFilter.SortKey.RATINGS_COUNT)
+                .withLimit(20));
+    }
+
+    /**
+     * Keep the books of an author rated 4 stars and up.
+     */
+    @Benchmark
+    public List<Book> filterByAuthorAndRating() {
+        return mTable.select(BookFilter.NONE.withAuthor("author 1").withMinRating(4));
+    }
+}
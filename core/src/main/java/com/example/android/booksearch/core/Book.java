@@ -0,0 +1,208 @@
+package com.example.android.booksearch.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class that represents a Book object.
+ *
+ * Books are kept compact, since every book fetched for a query stays in memory: authors are a
+ * flat array, and author names and the parts of URLs repeated across books are shared through a
+ * {@link StringPool}. URLs containing the volume ID are kept as the shared text before and after
+ * the ID, and rebuilt when asked for. The list reads the thumbnail URL of the
+ * {@link BookDisplayModel} instead, built once, so scrolling doesn't rebuild URLs.
+ */
+
+public final class Book {
+
+    /** Name of the parameter holding the volume ID in Google Books URLs */
+    private static final String ID_PARAMETER = "id=";
+
+    /** Google Books volume ID of this book, used to tell apart duplicates across pages */
+    private final String mId;
+
+    /** Title of this book */
+    private final String mTitle;
+
+    /** Authors of this book */
+    private final String[] mAuthors;
+
+    /** Average rating given by reviewers */
+    private final double mRating;
+
+    /** Amount of people that have reviewed this book */
+    private final int mRatingsCount;
+
+    /** Text of the URL leading to complete information before the volume ID, or the whole URL */
+    private final String mInfoUrlPrefix;
+
+    /** Text of the URL leading to complete information after the volume ID, or null */
+    private final String mInfoUrlSuffix;
+
+    /** Text of the thumbnail URL before the volume ID, or the whole URL */
+    private final String mThumbnailUrlPrefix;
+
+    /** Text of the thumbnail URL after the volume ID, or null */
+    private final String mThumbnailUrlSuffix;
+
+    /** Text shown for this book in the list, formatted once on creation */
+    private final BookDisplayModel mDisplayModel;
+
+    /**
+     * Constructor for a new Book object
+     * @param id Google Books volume ID, or null if unknown
+     * @param title Title of this book
+     * @param authors Author or authors of this book
+     * @param rating Average rating
+     * @param ratingsCount Amount of people that have reviewed
+     * @param url URL leading to complete information
+     * @param smallThumbnailUrl URL leading to thumbnail
+     */
+    public Book(String id, String title, List<String> authors, double rating,
+                int ratingsCount, String url, String smallThumbnailUrl) {
+        this(id, title, toArray(authors), rating, ratingsCount, splitPrefix(id, url),
+                splitSuffix(id, url), splitPrefix(id, smallThumbnailUrl),
+                splitSuffix(id, smallThumbnailUrl));
+    }
+
+    private Book(String id, String title, String[] authors, double rating, int ratingsCount,
+                 String infoUrlPrefix, String infoUrlSuffix, String thumbnailUrlPrefix,
+                 String thumbnailUrlSuffix) {
+        mId = id;
+        mTitle = title;
+        mAuthors = authors;
+        mRating = rating;
+        mRatingsCount = ratingsCount;
+        mInfoUrlPrefix = infoUrlPrefix;
+        mInfoUrlSuffix = infoUrlSuffix;
+        mThumbnailUrlPrefix = thumbnailUrlPrefix;
+        mThumbnailUrlSuffix = thumbnailUrlSuffix;
+        mDisplayModel = new BookDisplayModel(title, getAuthors(), rating, ratingsCount,
+                getSmallThumbnailUrl());
+    }
+
+    /**
+     * Returns the Google Books volume ID
+     * @return volume ID, or null if unknown
+     */
+    public String getId() {
+        return mId;
+    }
+
+    /**
+     * Returns the book title
+     * @return book title
+     */
+    public String getTitle() {
+        return mTitle;
+    }
+
+    /**
+     * Returns authors list
+     * @return unmodifiable authors list
+     */
+    public List<String> getAuthors() {
+        return Collections.unmodifiableList(Arrays.asList(mAuthors));
+    }
+
+    /**
+     * Returns average rating
+     * @return average rating
+     */
+    public double getRating() {
+        return mRating;
+    }
+
+    /**
+     * Return amount of people who left a review
+     * @return amount of people who rated
+     */
+    public int getRatingsCount() {
+        return mRatingsCount;
+    }
+
+    /**
+     * Returns a URL leading to complete information on this book, built from its shared parts
+     * on each call
+     * @return URL to complete information
+     */
+    public String getUrl() {
+        return joinUrl(mInfoUrlPrefix, mId, mInfoUrlSuffix);
+    }
+
+    /**
+     * Returns a URL leading to a thumbnail for this book, built from its shared parts on each
+     * call
+     * @return URL to thumbnail
+     */
+    public String getSmallThumbnailUrl() {
+        return joinUrl(mThumbnailUrlPrefix, mId, mThumbnailUrlSuffix);
+    }
+
+    /**
+     * Returns the text shown for this book in the list, ready to bind
+     * @return display model
+     */
+    public BookDisplayModel getDisplayModel() {
+        return mDisplayModel;
+    }
+
+    /**
+     * Returns the authors as an array of shared strings.
+     */
+    private static String[] toArray(List<String> authors) {
+        String[] array = new String[authors.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = StringPool.intern(authors.get(i));
+        }
+        return array;
+    }
+
+    /**
+     * Returns the shared text of a URL before the volume ID, or the whole URL if it doesn't
+     * contain the ID. A whole URL is unique to its book, so it is kept out of the pool, where it
+     * would only push out the prefixes shared by every book.
+     */
+    private static String splitPrefix(String id, String url) {
+        int idStart = findId(id, url);
+        return idStart < 0 ? url : StringPool.intern(url.substring(0, idStart));
+    }
+
+    /**
+     * Returns the shared text of a URL after the volume ID, or null if it doesn't contain the ID.
+     */
+    private static String splitSuffix(String id, String url) {
+        int idStart = findId(id, url);
+        return idStart < 0 ? null : StringPool.intern(url.substring(idStart + id.length()));
+    }
+
+    /**
+     * Returns where the value of the id parameter starts in a URL, or -1 if the URL doesn't have
+     * the given volume ID as its id parameter.
+     */
+    private static int findId(String id, String url) {
+        if (id == null || url == null) {
+            return -1;
+        }
+        int parameter = url.indexOf(ID_PARAMETER + id);
+        while (parameter > 0) {
+            char previous = url.charAt(parameter - 1);
+            int end = parameter + ID_PARAMETER.length() + id.length();
+            if ((previous == '?' || previous == '&')
+                    && (end == url.length() || url.charAt(end) == '&')) {
+                return parameter + ID_PARAMETER.length();
+            }
+            parameter = url.indexOf(ID_PARAMETER + id, parameter + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the URL made of the given prefix, volume ID and suffix, or the prefix alone if
+     * there is no suffix.
+     */
+    private static String joinUrl(String prefix, String id, String suffix) {
+        return suffix == null ? prefix : prefix + id + suffix;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.android.booksearch.core;
+
+import java.util.List;
+
+/**
+ * Class that represents the immutable, ready to show text of a book in the list: every string a
+ * list item displays is formatted once, when the {@link Book} is created on the loader thread, so
+ * binding a list item only assigns these fields to its views. That includes the thumbnail URL,
+ * which is kept whole even though {@link Book} keeps it split, since every bind and prefetch
+ * reads it.
+ */
+
+public final class BookDisplayModel {
+
+    /** Text to remove from thumbnail URLs, which adds a curled edge effect on the lower right */
+    private static final String CURLED_EDGE = "&edge=curl";
+
+    /** Title of the book */
+    private final String mTitle;
+
+    /** Authors joined by commas, or null if there are none */
+    private final String mAuthors;
+
+    /** Formatted average rating, or null if there is none */
+    private final String mRating;
+
+    /** Formatted amount of ratings between parentheses, or null if unknown */
+    private final String mRatingsCount;
+
+    /** Thumbnail URL without the curled edge effect */
+    private final String mThumbnailUrl;
+
+    /**
+     * Constructor for a new BookDisplayModel object
+     * @param title Title of the book
+     * @param authors Authors of the book
+     * @param rating Average rating, or -1 if there is none
+     * @param ratingsCount Amount of ratings, or -1 if unknown
+     * @param smallThumbnailUrl URL leading to thumbnail, as received
+     */
+    public BookDisplayModel(String title, List<String> authors, double rating, int ratingsCount,
+                            String smallThumbnailUrl) {
+        mTitle = title;
+        mAuthors = authors.isEmpty() ? null : joinAuthors(authors);
+
+        // -1 means that the value wasn't found or couldn't be coerced to a number
+        mRating = rating == -1 ? null : String.valueOf(rating);
+        mRatingsCount = ratingsCount == -1 ? null : "(" + ratingsCount + ")";
+
+        mThumbnailUrl = smallThumbnailUrl == null
+                ? null : smallThumbnailUrl.replace(CURLED_EDGE, "");
+    }
+
+    /**
+     * Join author names with commas.
+     */
+    private static String joinAuthors(List<String> authors) {
+        StringBuilder joined = new StringBuilder(authors.get(0));
+        for (int i = 1; i < authors.size(); i++) {
+            joined.append(", ").append(authors.get(i));
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Returns the book title
+     * @return book title
+     */
+    public String getTitle() {
+        return mTitle;
+    }
+
+    /**
+     * Returns the authors joined by commas
+     * @return authors, or null if there are none
+     */
+    public String getAuthors() {
+        return mAuthors;
+    }
+
+    /**
+     * Returns the formatted average rating
+     * @return rating, or null if there is none
+     */
+    public String getRating() {
+        return mRating;
+    }
+
+    /**
+     * Returns the formatted amount of ratings, between parentheses
+     * @return ratings count, or null if unknown
+     */
+    public String getRatingsCount() {
+        return mRatingsCount;
+    }
+
+    /**
+     * Returns the thumbnail URL without the curled edge effect
+     * @return URL to thumbnail
+     */
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.android.booksearch.core;
+
+/**
+ * Class that represents how the books loaded for a query are sorted and filtered on the device,
+ * without loading them again. Filters are immutable; each change returns a new one.
+ */
+
+public final class BookFilter {
+
+    /**
+     * Order of the books, best first.
+     */
+    public enum SortKey {
+        /** Order of the server */
+        RELEVANCE,
+        /** Highest average rating first, then most ratings */
+        RATING,
+        /** Most ratings first, then highest average rating */
+        RATINGS_COUNT
+    }
+
+    /** Minimum rating that keeps every book, rated or not */
+    public static final double ANY_RATING = -1;
+
+    /** Limit that keeps every book */
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    /** Filter that keeps every book, in the order of the server */
+    public static final BookFilter NONE =
+            new BookFilter(SortKey.RELEVANCE, ANY_RATING, null, NO_LIMIT);
+
+    /** Order of the books */
+    private final SortKey mSortKey;
+
+    /** Minimum average rating of the books kept; books without ratings only pass ANY_RATING */
+    private final double mMinRating;
+
+    /** Text that the name of an author of the books kept must contain, or null */
+    private final String mAuthor;
+
+    /** Maximum amount of books kept, the best ones in order */
+    private final int mLimit;
+
+    /**
+     * Constructor for a new BookFilter object
+     * @param sortKey Order of the books
+     * @param minRating Minimum average rating, or ANY_RATING
+     * @param author Text an author name must contain, ignoring case and accents, or null
+     * @param limit Maximum amount of books kept, or NO_LIMIT
+     */
+    public BookFilter(SortKey sortKey, double minRating, String author, int limit) {
+        mSortKey = sortKey;
+        mMinRating = minRating;
+        mAuthor = author == null || author.trim().isEmpty() ? null : author.trim();
+        mLimit = limit;
+    }
+
+    /**
+     * Returns the order of the books
+     */
+    public SortKey getSortKey() {
+        return mSortKey;
+    }
+
+    /**
+     * Returns the minimum average rating of the books kept, or ANY_RATING
+     */
+    public double getMinRating() {
+        return mMinRating;
+    }
+
+    /**
+     * Returns the text that the name of an author of the books kept must contain, or null
+     */
+    public String getAuthor() {
+        return mAuthor;
+    }
+
+    /**
+     * Returns the maximum amount of books kept, or NO_LIMIT
+     */
+    public int getLimit() {
+        return mLimit;
+    }
+
+    /**
+     * Returns whether this filter keeps every book in the order of the server.
+     */
+    public boolean isNone() {
+        return mSortKey == SortKey.RELEVANCE && mMinRating <= ANY_RATING && mAuthor == null
+                && mLimit == NO_LIMIT;
+    }
+
+    /**
+     * Returns a copy of this filter with the given order.
+     */
+    public BookFilter withSortKey(SortKey sortKey) {
+        return new BookFilter(sortKey, mMinRating, mAuthor, mLimit);
+    }
+
+    /**
+     * Returns a copy of this filter with the given minimum rating, or ANY_RATING.
+     */
+    public BookFilter withMinRating(double minRating) {
+        return new BookFilter(mSortKey, minRating, mAuthor, mLimit);
+    }
+
+    /**
+     * Returns a copy of this filter with the given author text, or null for any author.
+     */
+    public BookFilter withAuthor(String author) {
+        return new BookFilter(mSortKey, mMinRating, author, mLimit);
+    }
+
+    /**
+     * Returns a copy of this filter with the given limit, or NO_LIMIT.
+     */
+    public BookFilter withLimit(int limit) {
+        return new BookFilter(mSortKey, mMinRating, mAuthor, limit);
+    }
+
+    @Override
+    public String toString() {
+        return "BookFilter{sortKey=" + mSortKey + ", minRating=" + mMinRating
+                + ", author=" + mAuthor + ", limit=" + mLimit + "}";
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.android.booksearch.core;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for Google Books API responses. Reads the response token by token and creates
+ * {@link Book} objects as soon as each item has been read, skipping every field we don't use,
+ * so the whole response never has to be held in memory as a String or a JSONObject tree.
+ *
+ * Built on the streaming reader of Gson, which has the same API as android.util.JsonReader, so
+ * it runs on a plain JVM as well.
+ */
+public final class BookJsonParser {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = BookJsonParser.class.getSimpleName();
+
+    /** Value used when a rating or ratings count is missing or can't be coerced to a number */
+    private static final int NOT_FOUND = -1;
+
+    /**
+     * Receives the books of a response while it is being parsed, before the whole page is.
+     */
+    public interface BatchListener {
+
+        /**
+         * Called on the parsing thread every time a batch of books has been parsed.
+         *
+         * @param batch books parsed since the previous batch, in the order of the response
+         */
+        void onBatchParsed(List<Book> batch);
+    }
+
+    /**
+     * Create a private constructor because no one should ever create a {@link BookJsonParser}
+     * object. This class is only meant to hold static methods.
+     */
+    private BookJsonParser() {
+    }
+
+    /**
+     * Return the page of {@link Book} objects read directly from a JSON response stream.
+     *
+     * If an item is missing a required field (title, info link or thumbnail), or the JSON is
+     * malformed, parsing stops and the books read so far are returned, the same way the
+     * JSONObject based parser the app used before did.
+     *
+     * @param inputStream stream containing the JSON response
+     * @return page of books, never null
+     * @throws IOException if there is a problem reading from the stream
+     */
+    public static BookPage parse(InputStream inputStream) throws IOException {
+        return parse(inputStream, null);
+    }
+
+    /**
+     * Return the page of {@link Book} objects read directly from a JSON response stream,
+     * checking the given signal between books so that parsing stops once it is cancelled.
+     *
+     * @param inputStream stream containing the JSON response
+     * @param cancellationSignal signal to cancel parsing with, or null
+     * @return page of books, never null
+     * @throws IOException if there is a problem reading from the stream
+     * @throws OperationCanceledException if the signal was cancelled
+     */
+    public static BookPage parse(InputStream inputStream, CancellationSignal cancellationSignal)
+            throws IOException {
+        return parse(inputStream, cancellationSignal, 0, null);
+    }
+
+    /**
+     * Return the page of {@link Book} objects read directly from a JSON response stream, handing
+     * them to the given listener in batches as they are parsed, so they can be shown before the
+     * rest of the response has even been downloaded. Books of a last, incomplete batch are only
+     * in the page returned.
+     *
+     * @param inputStream stream containing the JSON response
+     * @param cancellationSignal signal to cancel parsing with, or null
+     * @param batchSize amount of books in each batch
+     * @param listener listener receiving the batches, or null
+     * @return page of books, never null
+     * @throws IOException if there is a problem reading from the stream
+     * @throws OperationCanceledException if the signal was cancelled
+     */
+    public static BookPage parse(InputStream inputStream, CancellationSignal cancellationSignal,
+                                 int batchSize, BatchListener listener) throws IOException {
+
+        // Create an empty ArrayList that we can start adding books to
+        List<Book> books = new ArrayList<>();
+
+        // Total amount of results for the query, across all pages
+        int totalItems = NOT_FOUND;
+
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                // "totalItems" and "items" are the only keys in the root object we are
+                // interested in
+                switch (reader.nextName()) {
+                    case "totalItems":
+                        totalItems = (int) readOptionalDouble(reader);
+                        break;
+                    case "items":
+                        readItems(reader, books, cancellationSignal, batchSize, listener);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+        } catch (MalformedJsonException | IllegalStateException | IncompleteBookException e) {
+            // If the JSON is malformed or a required value is missing, keep the books read so far
+            // and print the error message to the logs.
+            Logger.e(LOG_TAG, "Problem parsing the book JSON results", e);
+        } finally {
+            reader.close();
+        }
+
+        // Return the page of books
+        return new BookPage(books, totalItems);
+    }
+
+    /**
+     * Read the array associated with the key called "items" and add a {@link Book} for each of
+     * its elements to the given list, handing every full batch to the listener, if any.
+     */
+    private static void readItems(JsonReader reader, List<Book> books,
+                                  CancellationSignal cancellationSignal, int batchSize,
+                                  BatchListener listener) throws IOException {
+        int batchStart = books.size();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (cancellationSignal != null) {
+                cancellationSignal.throwIfCanceled();
+            }
+            books.add(readBook(reader));
+
+            if (listener != null && books.size() - batchStart >= batchSize) {
+                listener.onBatchParsed(new ArrayList<>(books.subList(batchStart, books.size())));
+                batchStart = books.size();
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Read a single item and return the {@link Book} built from its volume ID and its
+     * "volumeInfo" object.
+     */
+    private static Book readBook(JsonReader reader) throws IOException {
+        String id = null;
+        Book book = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = readOptionalString(reader);
+                    break;
+                case "volumeInfo":
+                    book = readVolumeInfo(reader, id);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (book == null) {
+            throw new IncompleteBookException("volumeInfo");
+        }
+
+        // The volume ID comes before "volumeInfo" in Google Books responses, but JSON doesn't
+        // guarantee any order, so create the book again in the rare case it came after
+        if (book.getId() == null && id != null) {
+            book = new Book(id, book.getTitle(), book.getAuthors(), book.getRating(),
+                    book.getRatingsCount(), book.getUrl(), book.getSmallThumbnailUrl());
+        }
+        return book;
+    }
+
+    /**
+     * Read the "volumeInfo" object, which represents all properties for a book, and create a
+     * {@link Book} with the title, authors, average rating, ratings count, information link and
+     * thumbnail link found in it.
+     */
+    private static Book readVolumeInfo(JsonReader reader, String id) throws IOException {
+        String title = null;
+        ArrayList<String> authors = new ArrayList<>();
+        double rating = NOT_FOUND;
+        int ratingsCount = NOT_FOUND;
+        String infoUrl = null;
+        String smallThumbnailUrl = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "title":
+                    title = readOptionalString(reader);
+                    break;
+                case "authors":
+                    readAuthors(reader, authors);
+                    break;
+                case "averageRating":
+                    rating = readOptionalDouble(reader);
+                    break;
+                case "ratingsCount":
+                    double count = readOptionalDouble(reader);
+                    ratingsCount = count == NOT_FOUND ? NOT_FOUND : (int) count;
+                    break;
+                case "infoLink":
+                    infoUrl = readOptionalString(reader);
+                    break;
+                case "imageLinks":
+                    smallThumbnailUrl = readSmallThumbnail(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        // Title, information link and thumbnail are required, just like in the JSONObject based
+        // parser where getString() throws when they are missing.
+        if (title == null) {
+            throw new IncompleteBookException("title");
+        }
+        if (infoUrl == null) {
+            throw new IncompleteBookException("infoLink");
+        }
+        if (smallThumbnailUrl == null) {
+            throw new IncompleteBookException("imageLinks.smallThumbnail");
+        }
+
+        return new Book(id, title, authors, rating, ratingsCount, infoUrl, smallThumbnailUrl);
+    }
+
+    /**
+     * Read the "authors" array, if the value is an array, and add each name to the given list.
+     * Any other value leaves the list empty.
+     */
+    private static void readAuthors(JsonReader reader, List<String> authors) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String author = readOptionalString(reader);
+            if (author != null) {
+                authors.add(author);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Read the "imageLinks" object and return the value for the key called "smallThumbnail",
+     * or null if there is none.
+     */
+    private static String readSmallThumbnail(JsonReader reader) throws IOException {
+        String smallThumbnailUrl = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("smallThumbnail".equals(reader.nextName())) {
+                smallThumbnailUrl = readOptionalString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return smallThumbnailUrl;
+    }
+
+    /**
+     * Return the next value as a String if it is a string or a number, or null if it is null.
+     */
+    private static String readOptionalString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Return the next value as a double if it is a number or can be coerced to one.
+     * Return -1 otherwise, the same as JSONObject.optDouble(name, -1) does.
+     */
+    private static double readOptionalDouble(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING) {
+            reader.skipValue();
+            return NOT_FOUND;
+        }
+        try {
+            return Double.parseDouble(reader.nextString());
+        } catch (NumberFormatException e) {
+            return NOT_FOUND;
+        }
+    }
+
+    /**
+     * Thrown when an item lacks one of the values a {@link Book} can't be created without.
+     */
+    private static final class IncompleteBookException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        IncompleteBookException(String key) {
+            super("No value for " + key);
+        }
+    }
+}
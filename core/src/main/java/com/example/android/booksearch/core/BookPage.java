@@ -0,0 +1,45 @@
+package com.example.android.booksearch.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class that represents one immutable page of results returned by the Google Books API. The
+ * books are copied when the page is created, so later changes to the caller's list don't show.
+ */
+
+public class BookPage {
+
+    /** Books found in this page, unmodifiable */
+    private final List<Book> mBooks;
+
+    /** Total amount of results for the query, as reported by the server, or -1 if unknown */
+    private final int mTotalItems;
+
+    /**
+     * Constructor for a new BookPage object
+     * @param books Books found in this page, copied
+     * @param totalItems Total amount of results for the query, or -1 if unknown
+     */
+    public BookPage(List<Book> books, int totalItems) {
+        mBooks = Collections.unmodifiableList(new ArrayList<>(books));
+        mTotalItems = totalItems;
+    }
+
+    /**
+     * Returns the books found in this page
+     * @return unmodifiable books in this page
+     */
+    public List<Book> getBooks() {
+        return mBooks;
+    }
+
+    /**
+     * Returns the total amount of results for the query
+     * @return total amount of results, or -1 if unknown
+     */
+    public int getTotalItems() {
+        return mTotalItems;
+    }
+}
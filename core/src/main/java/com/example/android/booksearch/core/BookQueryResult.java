@@ -0,0 +1,142 @@
+package com.example.android.booksearch.core;
+
+import java.net.HttpURLConnection;
+import java.util.Collections;
+
+/**
+ * Class that represents the immutable result of a single request for books: the HTTP response
+ * code, the page of books received, how long the request took and what went wrong, if anything.
+ *
+ * Every request gets its own result, so several requests can run at the same time without
+ * reading each other's response codes.
+ */
+
+public final class BookQueryResult {
+
+    /** Response code used when no HTTP response was received */
+    public static final int NO_RESPONSE = -1;
+
+    /**
+     * Where the books of a result came from.
+     */
+    public enum Source {
+        /** Fetched from the Google Books API */
+        NETWORK,
+        /** Read from the in-memory or disk {@code BookCache} of the app */
+        CACHE,
+        /** Read from the persistent {@code BookStore} of the app; may be stale */
+        STORE,
+        /** Found in the local {@code BookIndex} of the app of every book fetched; may be stale */
+        INDEX,
+        /** Restored from the saved state of the activity */
+        SAVED_STATE,
+        /** Narrowed down from the books of the previous query, which this one refines */
+        REFINED
+    }
+
+    /** Page with no books, used when a request fails */
+    private static final BookPage EMPTY_PAGE =
+            new BookPage(Collections.<Book>emptyList(), 0);
+
+    /** HTTP response code, or {@link #NO_RESPONSE} if no response was received */
+    private final int mResponseCode;
+
+    /** Page of books received, never null */
+    private final BookPage mPage;
+
+    /** Time the request took, in milliseconds */
+    private final long mElapsedMillis;
+
+    /** Cause of the failure, or null if there was none */
+    private final Exception mError;
+
+    /** Where the books came from */
+    private final Source mSource;
+
+    /**
+     * Constructor for a new BookQueryResult object for books fetched from the network
+     * @param responseCode HTTP response code, or {@link #NO_RESPONSE}
+     * @param page Page of books received, or null if none was received
+     * @param elapsedMillis Time the request took, in milliseconds
+     * @param error Cause of the failure, or null if there was none
+     */
+    public BookQueryResult(int responseCode, BookPage page, long elapsedMillis, Exception error) {
+        this(responseCode, page, elapsedMillis, error, Source.NETWORK);
+    }
+
+    /**
+     * Constructor for a new BookQueryResult object
+     * @param responseCode HTTP response code, or {@link #NO_RESPONSE}
+     * @param page Page of books received, or null if none was received
+     * @param elapsedMillis Time the request took, in milliseconds
+     * @param error Cause of the failure, or null if there was none
+     * @param source Where the books came from
+     */
+    public BookQueryResult(int responseCode, BookPage page, long elapsedMillis, Exception error,
+                           Source source) {
+        mResponseCode = responseCode;
+        mPage = page == null ? EMPTY_PAGE : page;
+        mElapsedMillis = elapsedMillis;
+        mError = error;
+        mSource = source;
+    }
+
+    /**
+     * Returns the HTTP response code
+     * @return response code, or {@link #NO_RESPONSE} if no response was received
+     */
+    public int getResponseCode() {
+        return mResponseCode;
+    }
+
+    /**
+     * Returns the page of books received
+     * @return page of books, never null
+     */
+    public BookPage getPage() {
+        return mPage;
+    }
+
+    /**
+     * Returns the time the request took
+     * @return elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return mElapsedMillis;
+    }
+
+    /**
+     * Returns what went wrong with the request
+     * @return cause of the failure, or null if there was none
+     */
+    public Exception getError() {
+        return mError;
+    }
+
+    /**
+     * Returns where the books came from
+     * @return source of the books
+     */
+    public Source getSource() {
+        return mSource;
+    }
+
+    /**
+     * Returns whether the server answered with response code 200 and the response was read
+     * without errors
+     * @return true if the request was successful
+     */
+    public boolean isSuccessful() {
+        return mResponseCode == HttpURLConnection.HTTP_OK && mError == null;
+    }
+
+    @Override
+    public String toString() {
+        return "BookQueryResult{responseCode=" + mResponseCode
+                + ", books=" + mPage.getBooks().size()
+                + ", totalItems=" + mPage.getTotalItems()
+                + ", elapsedMillis=" + mElapsedMillis
+                + ", error=" + mError
+                + ", source=" + mSource + "}";
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.android.booksearch.core;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Books loaded for a query laid out in columns, to sort and filter them with a {@link BookFilter}
+ * without touching the books themselves.
+ *
+ * Ratings and ratings counts are kept in primitive arrays, and the authors of each book as a
+ * single string folded to lowercase without accents, so a pass over thousands of books reads a
+ * few contiguous arrays and allocates nothing but the rows it keeps. Sorting selects the best
+ * rows with a bounded heap, so keeping only the top k books costs O(n log k), and sorting them
+ * all is a heapsort. Books without ratings, which have -1 as rating and count, sort last.
+ *
+ * Tables are immutable and safe to read on any thread. Building one is meant for a background
+ * thread; since pages are appended to the end of the books, a table can be built from the
+ * previous one, folding only the authors of the new books.
+ */
+public final class BookTable {
+
+    /** Accents and other combining marks, removed when folding */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    /** Separator between the authors of a book, which never appears in a name */
+    private static final char AUTHOR_SEPARATOR = '\u001F';
+
+    /** Table without books */
+    public static final BookTable EMPTY = new BookTable(new Book[0], new double[0], new int[0],
+            new String[0]);
+
+    /** Books of the table, in the order of the server */
+    private final Book[] mBooks;
+
+    /** Average rating of each book, or -1 */
+    private final double[] mRatings;
+
+    /** Amount of ratings of each book, or -1 */
+    private final int[] mRatingsCounts;
+
+    /** Authors of each book, folded and joined */
+    private final String[] mAuthors;
+
+    private BookTable(Book[] books, double[] ratings, int[] ratingsCounts, String[] authors) {
+        mBooks = books;
+        mRatings = ratings;
+        mRatingsCounts = ratingsCounts;
+        mAuthors = authors;
+    }
+
+    /**
+     * Returns a table of the given books. If the books of the previous table are the start of
+     * the given ones, their columns are reused and only the books after them are read.
+     *
+     * @param books books, in the order of the server
+     * @param previous table built before for the same query, or null
+     */
+    public static BookTable of(List<Book> books, BookTable previous) {
+        int size = books.size();
+        int reused = 0;
+        if (previous != null && previous.size() <= size) {
+            reused = previous.size();
+            for (int row = 0; row < reused; row++) {
+                if (previous.mBooks[row] != books.get(row)) {
+                    reused = 0;
+                    break;
+                }
+            }
+        }
+        if (reused == size && previous != null) {
+            return previous;
+        }
+
+        Book[] bookColumn = new Book[size];
+        double[] ratings = new double[size];
+        int[] ratingsCounts = new int[size];
+        String[] authors = new String[size];
+        if (reused > 0) {
+            System.arraycopy(previous.mBooks, 0, bookColumn, 0, reused);
+            System.arraycopy(previous.mRatings, 0, ratings, 0, reused);
+            System.arraycopy(previous.mRatingsCounts, 0, ratingsCounts, 0, reused);
+            System.arraycopy(previous.mAuthors, 0, authors, 0, reused);
+        }
+        for (int row = reused; row < size; row++) {
+            Book book = books.get(row);
+            bookColumn[row] = book;
+            ratings[row] = book.getRating();
+            ratingsCounts[row] = book.getRatingsCount();
+            authors[row] = foldAuthors(book.getAuthors());
+        }
+        return new BookTable(bookColumn, ratings, ratingsCounts, authors);
+    }
+
+    /**
+     * Returns the amount of books in the table.
+     */
+    public int size() {
+        return mBooks.length;
+    }
+
+    /**
+     * Returns the books passing the given filter, sorted and limited as it says.
+     *
+     * @param filter filter to apply
+     * @return new list of books, best first
+     */
+    public List<Book> select(BookFilter filter) {
+        int[] rows = selectRows(filter);
+        List<Book> books = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            books.add(mBooks[row]);
+        }
+        return books;
+    }
+
+    /**
+     * Returns the rows of the books passing the given filter, sorted and limited as it says.
+     */
+    int[] selectRows(BookFilter filter) {
+        double minRating = filter.getMinRating();
+        String author = filter.getAuthor() == null ? null : fold(filter.getAuthor());
+
+        int[] rows = new int[mBooks.length];
+        int count = 0;
+        for (int row = 0; row < mBooks.length; row++) {
+            // Books without ratings have -1, so any minimum above it drops them
+            if (mRatings[row] >= minRating
+                    && (author == null || mAuthors[row].contains(author))) {
+                rows[count++] = row;
+            }
+        }
+
+        int limit = Math.min(filter.getLimit(), count);
+        if (filter.getSortKey() == BookFilter.SortKey.RELEVANCE) {
+            return Arrays.copyOf(rows, limit);
+        }
+        return top(rows, count, limit, filter.getSortKey());
+    }
+
+    /**
+     * Returns the best rows of the given ones, best first, selected with a heap holding the best
+     * rows so far with the worst of them on top.
+     *
+     * @param rows candidate rows, in the first count elements; overwritten
+     * @param count amount of candidate rows
+     * @param limit amount of rows to return, at most count
+     * @param sortKey order of the rows
+     */
+    private int[] top(int[] rows, int count, int limit, BookFilter.SortKey sortKey) {
+        int[] heap = new int[limit];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            if (size < limit) {
+                heap[size] = row;
+                siftUp(heap, size++, sortKey);
+            } else if (limit > 0 && compare(row, heap[0], sortKey) < 0) {
+                heap[0] = row;
+                siftDown(heap, size, sortKey);
+            }
+        }
+
+        // Move the worst row to the end until the heap is empty, leaving the best first
+        for (int end = size - 1; end > 0; end--) {
+            int worst = heap[0];
+            heap[0] = heap[end];
+            heap[end] = worst;
+            siftDown(heap, end, sortKey);
+        }
+        return heap;
+    }
+
+    private void siftUp(int[] heap, int position, BookFilter.SortKey sortKey) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (compare(heap[position], heap[parent], sortKey) <= 0) {
+                return;
+            }
+            swap(heap, position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size, BookFilter.SortKey sortKey) {
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && compare(heap[child + 1], heap[child], sortKey) > 0) {
+                child++;
+            }
+            if (compare(heap[child], heap[position], sortKey) <= 0) {
+                return;
+            }
+            swap(heap, position, child);
+            position = child;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int row = heap[i];
+        heap[i] = heap[j];
+        heap[j] = row;
+    }
+
+    /**
+     * Compares two rows for the given order: negative if the first comes before the second.
+     * Rows that tie keep the order of the server.
+     */
+    private int compare(int a, int b, BookFilter.SortKey sortKey) {
+        int result;
+        if (sortKey == BookFilter.SortKey.RATING) {
+            result = Double.compare(mRatings[b], mRatings[a]);
+            if (result == 0) {
+                result = compareInts(mRatingsCounts[b], mRatingsCounts[a]);
+            }
+        } else {
+            result = compareInts(mRatingsCounts[b], mRatingsCounts[a]);
+            if (result == 0) {
+                result = Double.compare(mRatings[b], mRatings[a]);
+            }
+        }
+        return result != 0 ? result : compareInts(a, b);
+    }
+
+    private static int compareInts(int a, int b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    /**
+     * Returns the authors of a book folded and joined, to search them at once.
+     */
+    private static String foldAuthors(List<String> authors) {
+        StringBuilder joined = new StringBuilder();
+        for (String author : authors) {
+            joined.append(fold(author)).append(AUTHOR_SEPARATOR);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Returns the given text in lowercase and without accents.
+     */
+    private static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
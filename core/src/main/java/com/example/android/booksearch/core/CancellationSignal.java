@@ -0,0 +1,77 @@
+package com.example.android.booksearch.core;
+
+/**
+ * Signal used to cancel an operation in progress, such as a request and the parsing of its
+ * response, from another thread. Works like android.os.CancellationSignal, without depending
+ * on Android.
+ */
+public final class CancellationSignal {
+
+    /**
+     * Listens for the signal being cancelled.
+     */
+    public interface OnCancelListener {
+
+        /**
+         * Called on the thread that cancelled the signal.
+         */
+        void onCancel();
+    }
+
+    /** Whether the signal was cancelled. Guarded by this. */
+    private boolean mIsCanceled;
+
+    /** Listener called when the signal is cancelled, or null. Guarded by this. */
+    private OnCancelListener mOnCancelListener;
+
+    /**
+     * Returns whether the signal was cancelled.
+     */
+    public synchronized boolean isCanceled() {
+        return mIsCanceled;
+    }
+
+    /**
+     * Throw an {@link OperationCanceledException} if the signal was cancelled.
+     */
+    public void throwIfCanceled() {
+        if (isCanceled()) {
+            throw new OperationCanceledException();
+        }
+    }
+
+    /**
+     * Cancel the operation and call the listener, if any. Does nothing if the signal was
+     * cancelled already.
+     */
+    public void cancel() {
+        OnCancelListener listener;
+        synchronized (this) {
+            if (mIsCanceled) {
+                return;
+            }
+            mIsCanceled = true;
+            listener = mOnCancelListener;
+        }
+        if (listener != null) {
+            listener.onCancel();
+        }
+    }
+
+    /**
+     * Set the listener called when the signal is cancelled. If it was cancelled already, the
+     * listener is called right away. A signal has a single listener, which this replaces, so
+     * operations running several requests at once give each request its own signal.
+     *
+     * @param listener listener to call, or null to remove it
+     */
+    public void setOnCancelListener(OnCancelListener listener) {
+        synchronized (this) {
+            mOnCancelListener = listener;
+            if (!mIsCanceled || listener == null) {
+                return;
+            }
+        }
+        listener.onCancel();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.android.booksearch.core;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} that counts the bytes read through it, and the time spent waiting for
+ * them.
+ */
+final class CountingInputStream extends FilterInputStream {
+
+    /** Amount of bytes read so far */
+    private long mCount;
+
+    /** Time spent in reads so far, in nanoseconds */
+    private long mReadNanos;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Returns the amount of bytes read so far.
+     */
+    long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the time spent in reads so far, in nanoseconds.
+     */
+    long getReadNanos() {
+        return mReadNanos;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long startNanos = System.nanoTime();
+        int result = super.read();
+        mReadNanos += System.nanoTime() - startNanos;
+        if (result != -1) {
+            mCount++;
+        }
+        return result;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        long startNanos = System.nanoTime();
+        int result = super.read(buffer, offset, length);
+        mReadNanos += System.nanoTime() - startNanos;
+        if (result != -1) {
+            mCount += result;
+        }
+        return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long result = super.skip(n);
+        mCount += result;
+        return result;
+    }
+
+    @Override
+    public boolean markSupported() {
+        // Rewinding would count the same bytes twice
+        return false;
+    }
+}
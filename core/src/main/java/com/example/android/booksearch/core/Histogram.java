@@ -0,0 +1,155 @@
+package com.example.android.booksearch.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of every value recorded since creation, such as durations or sizes, that answers
+ * percentiles within about 6% of the exact value.
+ *
+ * Values are counted in buckets that grow with the value: each power of two is split in 16
+ * buckets of equal width. Recording only increments counters, without locking or allocating, so
+ * histograms can stay on in production; memory is fixed whatever the amount of values.
+ */
+public final class Histogram {
+
+    /** Each power of two is split in 2^SUB_BUCKET_BITS buckets */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** Amount of buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Amount of buckets, enough for any non negative long, whose highest bit is at most 62 */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /** Amount of values recorded in each bucket */
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+
+    /** Amount of values recorded */
+    private final AtomicLong mCount = new AtomicLong();
+
+    /** Sum of the values recorded */
+    private final AtomicLong mSum = new AtomicLong();
+
+    /** Largest value recorded */
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Record a value. Negative values count as 0.
+     *
+     * @param value value to record
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mBuckets.incrementAndGet(bucketOf(value));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * Returns the amount of values recorded.
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * Returns the sum of the values recorded.
+     */
+    public long getSum() {
+        return mSum.get();
+    }
+
+    /**
+     * Returns the largest value recorded, or 0 if there is none.
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * Returns the given percentile of the values recorded, using the nearest-rank method. The
+     * value returned is the largest value of the bucket holding that rank, never more than the
+     * largest value recorded.
+     *
+     * @param percentile percentile between 0 and 1, such as 0.99
+     * @return value at the percentile, or -1 if there are no values
+     */
+    public long getPercentile(double percentile) {
+        // Counters are read one at a time while values keep coming, so the total is taken from
+        // the buckets themselves
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = mBuckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return -1;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(getUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the amount of buckets values are counted in.
+     */
+    public static int getBucketCount() {
+        return BUCKETS;
+    }
+
+    /**
+     * Returns the amount of values recorded in the given bucket.
+     *
+     * @param bucket bucket between 0 and {@link #getBucketCount()} excluded
+     */
+    public long getBucketValueCount(int bucket) {
+        return mBuckets.get(bucket);
+    }
+
+    /**
+     * Returns the smallest value counted in the given bucket.
+     */
+    public static long getLowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (bucket % SUB_BUCKETS) * width;
+    }
+
+    /**
+     * Returns the largest value counted in the given bucket.
+     */
+    public static long getUpperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : getLowerBound(bucket + 1) - 1;
+    }
+
+    /**
+     * Returns the bucket counting the given non negative value.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.android.booksearch.core;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class that represents an immutable HTTP GET request sent through an {@link HttpTransport}.
+ */
+
+public final class HttpRequest {
+
+    /**
+     * How urgent a request is, which decides the order requests are sent in when they are
+     * being rate limited.
+     */
+    public enum Priority {
+        /**
+         * Asked for by the user, who is waiting for it; goes first, and is only shed once it
+         * would wait longer than the maximum wait of the {@link RequestScheduler}
+         */
+        INTERACTIVE,
+        /** Refreshes data already shown; waits for more urgent requests */
+        BACKGROUND,
+        /** Fetches data that may be needed soon; dropped when requests are rate limited */
+        PREFETCH
+    }
+
+    /** URL to request */
+    private final URL mUrl;
+
+    /** Request headers, by name */
+    private final Map<String, String> mHeaders;
+
+    /** How urgent the request is */
+    private final Priority mPriority;
+
+    /**
+     * Constructor for a new interactive HttpRequest object
+     * @param url URL to request
+     * @param headers Request headers, by name
+     */
+    public HttpRequest(URL url, Map<String, String> headers) {
+        this(url, headers, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Constructor for a new HttpRequest object
+     * @param url URL to request
+     * @param headers Request headers, by name
+     * @param priority How urgent the request is
+     */
+    public HttpRequest(URL url, Map<String, String> headers, Priority priority) {
+        mUrl = url;
+        mHeaders = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        mPriority = priority;
+    }
+
+    /**
+     * Returns the URL to request
+     * @return URL to request
+     */
+    public URL getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * Returns the request headers
+     * @return unmodifiable map of headers, by name
+     */
+    public Map<String, String> getHeaders() {
+        return mHeaders;
+    }
+
+    /**
+     * Returns how urgent the request is
+     * @return request priority
+     */
+    public Priority getPriority() {
+        return mPriority;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.android.booksearch.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Response to an {@link HttpRequest}, received through an {@link HttpTransport}.
+ *
+ * Responses must always be closed, which lets the transport reuse the underlying connection.
+ */
+public interface HttpResponse extends Closeable {
+
+    /**
+     * Returns the HTTP response code.
+     */
+    int getCode();
+
+    /**
+     * Returns the value of the given response header, or null if there is none.
+     */
+    String getHeader(String name);
+
+    /**
+     * Returns the length of the body in bytes, as sent by the server, or -1 if unknown.
+     */
+    long getContentLength();
+
+    /**
+     * Returns the stream to read the body from, exactly as it came over the wire.
+     */
+    InputStream getBody() throws IOException;
+
+    /**
+     * Releases the response. Unlike {@link Closeable#close()}, it never throws.
+     */
+    @Override
+    void close();
+}
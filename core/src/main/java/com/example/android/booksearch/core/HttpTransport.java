@@ -0,0 +1,39 @@
+package com.example.android.booksearch.core;
+
+import java.io.IOException;
+
+/**
+ * Sends {@link HttpRequest}s and returns their {@link HttpResponse}s. Implementations decide how
+ * connections are created and reused.
+ */
+public interface HttpTransport {
+
+    /**
+     * Prepares a call for the given request. The request is sent by {@link Call#execute()}.
+     */
+    Call newCall(HttpRequest request);
+
+    /**
+     * A single request that can be executed once and cancelled from any thread.
+     */
+    interface Call {
+
+        /**
+         * Sends the request and blocks until the response headers are received.
+         *
+         * @throws IOException if the request fails or was cancelled
+         */
+        HttpResponse execute() throws IOException;
+
+        /**
+         * Cancels the call. A blocked {@link #execute()}, or a read from the body of its response,
+         * fails with an IOException.
+         */
+        void cancel();
+
+        /**
+         * Returns whether {@link #cancel()} was called.
+         */
+        boolean isCanceled();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.android.booksearch.core;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Keeps the latest latency samples of some operation and answers percentiles over them, to
+ * decide when to hedge a request and to measure tail latency.
+ */
+public final class LatencyTracker {
+
+    /** Latest samples, in milliseconds, used as a ring buffer */
+    private final long[] mSamples;
+
+    /** Amount of samples recorded so far, which may exceed the capacity */
+    private long mCount;
+
+    /**
+     * Constructs a new {@link LatencyTracker}.
+     *
+     * @param capacity amount of latest samples kept
+     */
+    public LatencyTracker(int capacity) {
+        mSamples = new long[capacity];
+    }
+
+    /**
+     * Record a latency sample.
+     *
+     * @param millis latency in milliseconds
+     */
+    public synchronized void record(long millis) {
+        mSamples[(int) (mCount % mSamples.length)] = millis;
+        mCount++;
+    }
+
+    /**
+     * Returns the amount of samples kept.
+     */
+    public synchronized int getSampleCount() {
+        return (int) Math.min(mCount, mSamples.length);
+    }
+
+    /**
+     * Returns the given percentile of the samples kept, using the nearest-rank method.
+     *
+     * @param percentile percentile between 0 and 1, such as 0.99
+     * @return latency in milliseconds, or -1 if there are no samples
+     */
+    public long getPercentile(double percentile) {
+        long[] sorted = getSortedSamples();
+        return percentile(sorted, percentile);
+    }
+
+    @Override
+    public String toString() {
+        long[] sorted = getSortedSamples();
+        return String.format(Locale.US, "n=%d p50=%dms p95=%dms p99=%dms", sorted.length,
+                percentile(sorted, 0.5), percentile(sorted, 0.95), percentile(sorted, 0.99));
+    }
+
+    /**
+     * Returns a sorted copy of the samples kept.
+     */
+    private synchronized long[] getSortedSamples() {
+        long[] sorted = Arrays.copyOf(mSamples, getSampleCount());
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Returns the given percentile of sorted samples, or -1 if there are none.
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
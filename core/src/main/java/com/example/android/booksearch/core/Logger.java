@@ -0,0 +1,91 @@
+package com.example.android.booksearch.core;
+
+/**
+ * Destination of the log messages of the engine, so it can log through android.util.Log in the
+ * app and anywhere else on a plain JVM.
+ *
+ * The engine logs through the static methods, which forward to the logger set with
+ * {@link #setLogger(Logger)}. Nothing is logged until one is set.
+ */
+public abstract class Logger {
+
+    /** Logger that drops every message */
+    public static final Logger NONE = new Logger() {
+        @Override
+        protected void info(String tag, String message) {
+        }
+
+        @Override
+        protected void error(String tag, String message, Throwable throwable) {
+        }
+    };
+
+    /** Logger that prints every message to the standard error stream */
+    public static final Logger SYSTEM_ERR = new Logger() {
+        @Override
+        protected void info(String tag, String message) {
+            System.err.println("I/" + tag + ": " + message);
+        }
+
+        @Override
+        protected void error(String tag, String message, Throwable throwable) {
+            System.err.println("E/" + tag + ": " + message);
+            if (throwable != null) {
+                throwable.printStackTrace();
+            }
+        }
+    };
+
+    /** Logger every message goes to */
+    private static volatile Logger sLogger = NONE;
+
+    /**
+     * Replaces the logger every message goes to.
+     *
+     * @param logger logger to use from now on
+     */
+    public static void setLogger(Logger logger) {
+        sLogger = logger;
+    }
+
+    /**
+     * Log an informational message.
+     *
+     * @param tag source of the message
+     * @param message message to log
+     */
+    public static void i(String tag, String message) {
+        sLogger.info(tag, message);
+    }
+
+    /**
+     * Log an error message.
+     *
+     * @param tag source of the message
+     * @param message message to log
+     */
+    public static void e(String tag, String message) {
+        sLogger.error(tag, message, null);
+    }
+
+    /**
+     * Log an error message with the exception that caused it.
+     *
+     * @param tag source of the message
+     * @param message message to log
+     * @param throwable cause of the error
+     */
+    public static void e(String tag, String message, Throwable throwable) {
+        sLogger.error(tag, message, throwable);
+    }
+
+    /**
+     * Writes an informational message.
+     */
+    protected abstract void info(String tag, String message);
+
+    /**
+     * Writes an error message, with the exception that caused it if there is one.
+     */
+    protected abstract void error(String tag, String message, Throwable throwable);
+}
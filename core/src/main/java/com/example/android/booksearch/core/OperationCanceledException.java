@@ -0,0 +1,17 @@
+package com.example.android.booksearch.core;
+
+/**
+ * Thrown when an operation was cancelled through its {@link CancellationSignal}. Works like
+ * android.os.OperationCanceledException, without depending on Android.
+ */
+public class OperationCanceledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new {@link OperationCanceledException}.
+     */
+    public OperationCanceledException() {
+        super("The operation has been canceled.");
+    }
+}
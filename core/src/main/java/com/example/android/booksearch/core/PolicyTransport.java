@@ -0,0 +1,425 @@
+package com.example.android.booksearch.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HttpTransport} that sends requests through another transport, retrying and hedging
+ * them as its {@link RequestPolicy} says. Every request is an idempotent GET, so sending one
+ * twice is always safe.
+ *
+ * Requests failing with an IOException, a 5xx or a 429 response are retried after a random
+ * backoff below an exponentially growing bound ("full jitter"), so clients that failed together
+ * don't retry together. If the last attempt still gets such a response, that response is
+ * returned. Requests shed by a {@link RequestScheduler} are not retried.
+ *
+ * Each attempt is hedged: once it has been waiting for longer than the chosen percentile of
+ * recent latencies, a second copy of the request is sent, and whichever response arrives first
+ * is returned while the other is cancelled. The copy is sent as a prefetch, so it is the first
+ * request dropped when rate limited. This bounds the tail latency caused by a slow
+ * connection or server, at the cost of a few percent more requests.
+ */
+public final class PolicyTransport implements HttpTransport {
+
+    /** Amount of latest latencies the hedging delay is computed from */
+    private static final int LATENCY_SAMPLES = 256;
+
+    /** Runs the attempts, so the calling thread can wait for the first of two */
+    private static final ExecutorService sAttemptExecutor =
+            Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "PolicyTransport");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /** Transport sending each attempt */
+    private final HttpTransport mDelegate;
+
+    /** How requests are retried and hedged */
+    private final RequestPolicy mPolicy;
+
+    /** Latencies of the requests sent, until their response headers */
+    private final LatencyTracker mLatencyTracker;
+
+    /** Source of the backoff jitter */
+    private final Random mRandom = new Random();
+
+    /** Amount of retries sent so far */
+    private final AtomicInteger mRetryCount = new AtomicInteger();
+
+    /** Amount of hedged requests sent so far */
+    private final AtomicInteger mHedgeCount = new AtomicInteger();
+
+    /**
+     * Constructs a new {@link PolicyTransport}.
+     *
+     * @param delegate transport sending each attempt
+     * @param policy how requests are retried and hedged
+     */
+    public PolicyTransport(HttpTransport delegate, RequestPolicy policy) {
+        this(delegate, policy, new LatencyTracker(LATENCY_SAMPLES));
+    }
+
+    /**
+     * Constructs a new {@link PolicyTransport} that decides when to hedge from the given
+     * latencies, for example ones recorded by an earlier transport.
+     *
+     * @param delegate transport sending each attempt
+     * @param policy how requests are retried and hedged
+     * @param latencyTracker latencies to hedge by, also recording the new ones
+     */
+    public PolicyTransport(HttpTransport delegate, RequestPolicy policy,
+                           LatencyTracker latencyTracker) {
+        mDelegate = delegate;
+        mPolicy = policy;
+        mLatencyTracker = latencyTracker;
+    }
+
+    /**
+     * Returns the latencies of the requests sent, until their response headers.
+     */
+    public LatencyTracker getLatencyTracker() {
+        return mLatencyTracker;
+    }
+
+    /**
+     * Returns the amount of retries sent so far.
+     */
+    public int getRetryCount() {
+        return mRetryCount.get();
+    }
+
+    /**
+     * Returns the amount of hedged requests sent so far.
+     */
+    public int getHedgeCount() {
+        return mHedgeCount.get();
+    }
+
+    @Override
+    public Call newCall(HttpRequest request) {
+        return new PolicyCall(request);
+    }
+
+    /**
+     * Returns whether a response code is worth retrying: a server error, or the quota being
+     * exceeded, in which case a {@link RateLimitedTransport} below holds the retry for as long
+     * as the server asked.
+     */
+    private static boolean isRetryable(int code) {
+        return code >= HttpURLConnection.HTTP_INTERNAL_ERROR
+                || code == RequestScheduler.HTTP_TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Returns the time to wait before the given retry, picked at random below a bound that
+     * doubles with every retry, up to the maximum backoff.
+     *
+     * @param retry number of the retry, starting at 1
+     */
+    private long getBackoffMillis(int retry) {
+        long bound = Math.min(mPolicy.getMaxBackoffMillis(),
+                mPolicy.getBaseBackoffMillis() << Math.min(retry - 1, 20));
+        return bound <= 0 ? 0 : (long) (mRandom.nextDouble() * bound);
+    }
+
+    /**
+     * Returns how long to wait for an attempt before hedging it, or -1 to not hedge, when
+     * hedging is off or there are not enough latencies yet.
+     */
+    private long getHedgeDelayMillis() {
+        if (mPolicy.getHedgePercentile() <= 0
+                || mLatencyTracker.getSampleCount() < mPolicy.getMinHedgeSamples()) {
+            return -1;
+        }
+        return Math.max(mPolicy.getMinHedgeDelayMillis(),
+                mLatencyTracker.getPercentile(mPolicy.getHedgePercentile()));
+    }
+
+    /**
+     * Call that retries and hedges its request through calls of the delegate transport.
+     */
+    private final class PolicyCall implements Call {
+
+        /** Request to send */
+        private final HttpRequest mRequest;
+
+        /** Every call of the delegate started so far. Guarded by this. */
+        private final List<Call> mCalls = new ArrayList<>();
+
+        /** Whether the call was cancelled. Guarded by this. */
+        private boolean mCanceled;
+
+        PolicyCall(HttpRequest request) {
+            mRequest = request;
+        }
+
+        @Override
+        public HttpResponse execute() throws IOException {
+            long startTime = System.nanoTime();
+            int maxAttempts = Math.max(1, mPolicy.getMaxAttempts());
+            for (int attempt = 1; ; attempt++) {
+                HttpResponse response = null;
+                IOException error = null;
+                try {
+                    response = executeHedged();
+                    if (!isRetryable(response.getCode())) {
+                        return response;
+                    }
+                } catch (IOException e) {
+                    // Shed requests would only be shed again
+                    if (isCanceled() || e instanceof RequestShedException) {
+                        throw e;
+                    }
+                    error = e;
+                }
+
+                // Give up if out of attempts, or if the retry would start past the deadline
+                long backoffMillis = getBackoffMillis(attempt);
+                long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+                long deadlineMillis = mPolicy.getRetryDeadlineMillis();
+                if (attempt >= maxAttempts
+                        || deadlineMillis > 0 && elapsedMillis + backoffMillis > deadlineMillis) {
+                    if (response != null) {
+                        return response;
+                    }
+                    throw error;
+                }
+
+                if (response != null) {
+                    response.close();
+                }
+                sleep(backoffMillis);
+                mRetryCount.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            List<Call> calls;
+            synchronized (this) {
+                mCanceled = true;
+                calls = new ArrayList<>(mCalls);
+                // Wake up a backoff in progress
+                notifyAll();
+            }
+            for (Call call : calls) {
+                call.cancel();
+            }
+        }
+
+        @Override
+        public synchronized boolean isCanceled() {
+            return mCanceled;
+        }
+
+        /**
+         * Sends the request, and once it has been waiting for longer than the hedging delay,
+         * a second copy of it, and returns the first response. A server error only wins if the
+         * other copy failed too.
+         */
+        private HttpResponse executeHedged() throws IOException {
+            long startTime = System.nanoTime();
+            long hedgeDelayMillis = getHedgeDelayMillis();
+            Race race = new Race();
+            List<Call> calls = new ArrayList<>();
+            calls.add(startAttempt(race, mRequest));
+
+            try {
+                IOException error = null;
+                int finished = 0;
+                while (finished < calls.size()) {
+                    Outcome outcome;
+                    if (calls.size() == 1 && hedgeDelayMillis >= 0) {
+                        outcome = race.mOutcomes.poll(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+                        if (outcome == null) {
+                            // The hedged copy is speculative, so a rate limiter may shed it
+                            calls.add(startAttempt(race, new HttpRequest(mRequest.getUrl(),
+                                    mRequest.getHeaders(), HttpRequest.Priority.PREFETCH)));
+                            mHedgeCount.incrementAndGet();
+                            continue;
+                        }
+                    } else {
+                        outcome = race.mOutcomes.take();
+                    }
+                    finished++;
+
+                    HttpResponse response = outcome.mResponse;
+                    if (response != null
+                            && (!isRetryable(response.getCode()) || finished == calls.size())) {
+                        if (!isRetryable(response.getCode())) {
+                            mLatencyTracker.record((System.nanoTime() - startTime) / 1000000);
+                        }
+                        race.setWinner(outcome.mCall);
+                        return response;
+                    } else if (response != null) {
+                        response.close();
+                        error = new IOException("HTTP " + response.getCode());
+                    } else if (error == null || error instanceof RequestShedException) {
+                        // A shed hedge doesn't hide why the other copy failed
+                        error = outcome.mError;
+                    }
+                }
+                throw error;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a response");
+            } finally {
+                // Responses of the attempts that lost are closed as they arrive. The call of the
+                // response returned is kept, so cancelling still stops reading its body.
+                race.finish();
+                for (Call call : calls) {
+                    if (!race.isWinner(call)) {
+                        synchronized (this) {
+                            mCalls.remove(call);
+                        }
+                        call.cancel();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Starts a call of the delegate for a copy of the request, reporting its outcome to the
+         * race.
+         *
+         * @throws IOException if this call was cancelled
+         */
+        private Call startAttempt(final Race race, HttpRequest request) throws IOException {
+            final Call call = mDelegate.newCall(request);
+            synchronized (this) {
+                if (mCanceled) {
+                    throw new IOException("Canceled");
+                }
+                mCalls.add(call);
+            }
+            sAttemptExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        race.report(new Outcome(call, call.execute(), null));
+                    } catch (IOException e) {
+                        race.report(new Outcome(call, null, e));
+                    } catch (RuntimeException e) {
+                        race.report(new Outcome(call, null, new IOException(e)));
+                    }
+                }
+            });
+            return call;
+        }
+
+        /**
+         * Waits for the given time, unless cancelled first.
+         *
+         * @throws IOException if the call was cancelled
+         */
+        private synchronized void sleep(long millis) throws IOException {
+            long endTime = System.nanoTime() + millis * 1000000;
+            try {
+                long remainingMillis = millis;
+                while (!mCanceled && remainingMillis > 0) {
+                    wait(remainingMillis);
+                    remainingMillis = (endTime - System.nanoTime()) / 1000000;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted during backoff");
+            }
+            if (mCanceled) {
+                throw new IOException("Canceled");
+            }
+        }
+    }
+
+    /**
+     * Outcomes of the attempts of one hedged request, in the order they arrive. Once the race is
+     * finished, responses arriving late are closed instead of queued, so their connections are
+     * released.
+     */
+    private static final class Race {
+
+        /** Outcomes not taken yet */
+        final BlockingQueue<Outcome> mOutcomes = new LinkedBlockingQueue<>();
+
+        /** Whether the race is over. Guarded by this. */
+        private boolean mFinished;
+
+        /** Call whose response won, or null. Guarded by this. */
+        private Call mWinner;
+
+        /**
+         * Queue the outcome of an attempt, or close its response if the race is over.
+         */
+        void report(Outcome outcome) {
+            synchronized (this) {
+                if (!mFinished) {
+                    mOutcomes.add(outcome);
+                    return;
+                }
+            }
+            if (outcome.mResponse != null) {
+                outcome.mResponse.close();
+            }
+        }
+
+        /**
+         * End the race, and close the responses left in the queue.
+         */
+        void finish() {
+            List<Outcome> left = new ArrayList<>();
+            synchronized (this) {
+                mFinished = true;
+                mOutcomes.drainTo(left);
+            }
+            for (Outcome outcome : left) {
+                if (outcome.mResponse != null) {
+                    outcome.mResponse.close();
+                }
+            }
+        }
+
+        /**
+         * Mark the call whose response is returned, so it is not cancelled.
+         */
+        synchronized void setWinner(Call call) {
+            mWinner = call;
+        }
+
+        /**
+         * Returns whether the given call's response is the one returned.
+         */
+        synchronized boolean isWinner(Call call) {
+            return call == mWinner;
+        }
+    }
+
+    /**
+     * Response or error of a single attempt.
+     */
+    private static final class Outcome {
+
+        final Call mCall;
+        final HttpResponse mResponse;
+        final IOException mError;
+
+        Outcome(Call call, HttpResponse response, IOException error) {
+            mCall = call;
+            mResponse = response;
+            mError = error;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.example.android.booksearch.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Helper methods related to requesting and receiving book data from the Google Books API.
+ *
+ * Plain Java, so the whole engine runs on a JVM as well as in the app; log messages go to the
+ * {@link Logger}.
+ */
+public final class QueryUtils {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = QueryUtils.class.getSimpleName();
+
+    /** Characters left as they are in query parameters, besides letters and digits */
+    private static final String UNRESERVED_CHARACTERS = "_-!.~'()*";
+
+    /** Charset query parameters are encoded with */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Base url for the volumes collection of the Google Books API */
+    private static final String GOOGLE_BOOKS_VOLUMES_URL =
+            "https://www.googleapis.com/books/v1/volumes";
+
+    /**
+     * Partial response projection asking the server only for the fields {@link BookJsonParser}
+     * reads, instead of the full volume resources with descriptions, sale and access info.
+     */
+    private static final String RESPONSE_FIELDS = "totalItems,items(id,volumeInfo("
+            + "title,authors,averageRating,ratingsCount,infoLink,imageLinks/smallThumbnail))";
+
+    /**
+     * User agent sent with every request. Google APIs only compress responses for clients whose
+     * user agent contains "gzip".
+     */
+    private static final String USER_AGENT = "BookSearch/1.0 (gzip)";
+
+    /** Amount of latest query latencies kept to compute percentiles */
+    private static final int LATENCY_SAMPLES = 256;
+
+    /**
+     * Schedules every request to the Google Books API: bursts of up to 10 requests, 4 per
+     * second after that, the last 2 kept for interactive requests, which wait up to 10 seconds
+     */
+    private static final RequestScheduler sScheduler = new RequestScheduler(10, 4, 2, 10000);
+
+    /**
+     * Transport used to send every request. Failed requests are retried and slow ones hedged,
+     * and every attempt goes through the scheduler; use {@link RequestPolicy#NONE} to compare
+     * latencies without retries and hedging.
+     */
+    private static volatile HttpTransport sTransport = new PolicyTransport(
+            new RateLimitedTransport(new UrlConnectionTransport(TransportConfig.DEFAULT),
+                    sScheduler),
+            RequestPolicy.DEFAULT);
+
+    /** Latencies of the queries fetched, from the request until the page is parsed */
+    private static final LatencyTracker sQueryLatency = new LatencyTracker(LATENCY_SAMPLES);
+
+    /** Durations and sizes of the stages of each query */
+    private static final SearchMetrics sMetrics = SearchMetrics.getInstance();
+
+    /**
+     * Create a private constructor because no one should ever create a {@link QueryUtils} object.
+     * This class is only meant to hold static variables and methods, which can be accessed
+     * directly from the class name QueryUtils (and an object instance of QueryUtils is not needed).
+     */
+    private QueryUtils() {
+    }
+
+    /**
+     * Replaces the transport used to send requests, for example with one that sends them to a
+     * local server in tests and benchmarks.
+     *
+     * @param transport transport to use from now on
+     */
+    public static void setTransport(HttpTransport transport) {
+        sTransport = transport;
+    }
+
+    /**
+     * Returns the transport used to send requests.
+     */
+    public static HttpTransport getTransport() {
+        return sTransport;
+    }
+
+    /**
+     * Returns the scheduler every request to the Google Books API goes through.
+     */
+    public static RequestScheduler getScheduler() {
+        return sScheduler;
+    }
+
+    /**
+     * Returns the latencies of the queries fetched, from the request until the page is parsed,
+     * so tail latency can be compared across transports and request policies.
+     */
+    public static LatencyTracker getQueryLatency() {
+        return sQueryLatency;
+    }
+
+    /**
+     * Returns the query url that searches the Google Books data set for the given terms.
+     *
+     * @param query terms typed by the user
+     * @return query url
+     */
+    public static String buildQueryUrl(String query) {
+        return appendQueryParameter(GOOGLE_BOOKS_VOLUMES_URL, "q", query.trim());
+    }
+
+    /**
+     * Returns the url that requests a single page of results for the given query url. Only the
+     * fields used by the app are requested.
+     *
+     * @param url query url built by {@link #buildQueryUrl(String)}
+     * @param startIndex position of the first result of the page
+     * @param maxResults maximum amount of results in the page
+     * @return url for the page
+     */
+    public static String buildPageUrl(String url, int startIndex, int maxResults) {
+        url = appendQueryParameter(url, "startIndex", String.valueOf(startIndex));
+        url = appendQueryParameter(url, "maxResults", String.valueOf(maxResults));
+        return appendQueryParameter(url, "fields", RESPONSE_FIELDS);
+    }
+
+    /**
+     * Returns the url with the given query parameter appended, encoded the same way as
+     * android.net.Uri encodes them, so urls stay the same as the ones stored before.
+     */
+    private static String appendQueryParameter(String url, String name, String value) {
+        return url + (url.indexOf('?') < 0 ? '?' : '&') + encode(name) + '=' + encode(value);
+    }
+
+    /**
+     * Returns the text percent-encoded as UTF-8, leaving letters, digits and the unreserved
+     * characters as they are.
+     */
+    private static String encode(String text) {
+        StringBuilder encoded = new StringBuilder(text.length());
+        for (byte b : text.getBytes(UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || UNRESERVED_CHARACTERS.indexOf(c) >= 0) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Query the Google Books data set and return the result of the request, holding the page of
+     * {@link Book} objects received and the HTTP response code.
+     */
+    public static BookQueryResult fetchBookData(String url) {
+        return fetchBookData(url, null);
+    }
+
+    /**
+     * Query the Google Books data set on behalf of the user and return the result of the
+     * request, holding the page of {@link Book} objects received and the HTTP response code.
+     *
+     * When the given signal is cancelled the connection is closed, reading and parsing stop and
+     * an {@link OperationCanceledException} is thrown.
+     *
+     * @param url query url
+     * @param cancellationSignal signal to cancel the request with, or null
+     */
+    public static BookQueryResult fetchBookData(String url,
+                                                CancellationSignal cancellationSignal) {
+        return fetchBookData(url, HttpRequest.Priority.INTERACTIVE, cancellationSignal);
+    }
+
+    /**
+     * Query the Google Books data set and return the result of the request, holding the page of
+     * {@link Book} objects received and the HTTP response code.
+     *
+     * Requests that are not interactive may be shed when the app is being rate limited, which
+     * fails them with a {@link RequestShedException} and no response code.
+     *
+     * When the given signal is cancelled the connection is closed, reading and parsing stop and
+     * an {@link OperationCanceledException} is thrown.
+     *
+     * @param url query url
+     * @param priority how urgent the request is
+     * @param cancellationSignal signal to cancel the request with, or null
+     */
+    public static BookQueryResult fetchBookData(String url, HttpRequest.Priority priority,
+                                                CancellationSignal cancellationSignal) {
+        return fetchBookData(url, priority, cancellationSignal, 0, null);
+    }
+
+    /**
+     * Query the Google Books data set and return the result of the request, like
+     * {@link #fetchBookData(String, HttpRequest.Priority, CancellationSignal)}, handing the
+     * books to the given listener in batches as they stream in, before the result is returned.
+     *
+     * @param url query url
+     * @param priority how urgent the request is
+     * @param cancellationSignal signal to cancel the request with, or null
+     * @param batchSize amount of books in each batch
+     * @param listener listener receiving the batches on this thread, or null
+     */
+    public static BookQueryResult fetchBookData(String url, HttpRequest.Priority priority,
+                                                CancellationSignal cancellationSignal,
+                                                int batchSize,
+                                                BookJsonParser.BatchListener listener) {
+
+        Logger.i(LOG_TAG, "fetchBookData(): starting to fetch data");
+
+        // Create URL object
+        URL queryURL = createURL(url);
+
+        // Perform HTTP request to the URL and extract relevant fields from the JSON response
+        // while it streams in, creating a page of {@link Book}s
+        BookQueryResult result = makeHttpRequest(queryURL, priority, cancellationSignal,
+                batchSize, listener);
+
+        Logger.i(LOG_TAG, "fetchBookData(): " + result);
+
+        // Only requests that got an answer say something about latency
+        if (result.getResponseCode() != BookQueryResult.NO_RESPONSE) {
+            sQueryLatency.record(result.getElapsedMillis());
+            Logger.i(LOG_TAG, "Query latency: " + sQueryLatency);
+        }
+
+        // Return the result, holding the page of {@link Book}s
+        return result;
+    }
+
+    /**
+     * This method creates  URL object from a given string
+     *
+     * @param url the string representation of a URL
+     * @return URL object
+     */
+    private static URL createURL(String url) {
+
+        URL queryURL = null;
+        try {
+            queryURL = new URL(url);
+        } catch (MalformedURLException e) {
+            Logger.e(LOG_TAG, "Error creating URL. ", e);
+        }
+        return queryURL;
+    }
+
+    /**
+     * Make an HTTP request to the given URL and return its result, holding the response code
+     * and the page of {@link Book}s parsed from the response stream.
+     */
+    private static BookQueryResult makeHttpRequest(URL url, HttpRequest.Priority priority,
+                                                   CancellationSignal cancellationSignal,
+                                                   int batchSize,
+                                                   BookJsonParser.BatchListener listener) {
+
+        // If the URL is null, then return early.
+        if (url == null) {
+            return new BookQueryResult(BookQueryResult.NO_RESPONSE, null, 0,
+                    new MalformedURLException("No valid query URL"));
+        }
+
+        int responseCode = BookQueryResult.NO_RESPONSE;
+        BookPage page = null;
+        Exception error = null;
+
+        // Ask for a compressed response. Since the header is set here, the response is not
+        // decompressed transparently by the transport and has to be decoded below.
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "gzip");
+        headers.put("User-Agent", USER_AGENT);
+
+        final HttpTransport.Call call = sTransport.newCall(
+                new HttpRequest(url, headers, priority));
+        HttpResponse response = null;
+        CountingInputStream inputStream = null;
+        long startTime = elapsedRealtime();
+        long startNanos = System.nanoTime();
+
+        try {
+            // Cancel the call as soon as the request is cancelled. This makes any blocked connect
+            // or read on this thread fail right away, instead of downloading a response nobody
+            // will see. If the signal was already cancelled, the listener is called right away.
+            if (cancellationSignal != null) {
+                cancellationSignal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+                    @Override
+                    public void onCancel() {
+                        call.cancel();
+                    }
+                });
+            }
+
+            response = call.execute();
+            responseCode = response.getCode();
+            long firstByteMillis = elapsedRealtime() - startTime;
+            long firstByteNanos = System.nanoTime();
+            sMetrics.recordDuration(SearchMetrics.Stage.FIRST_BYTE, firstByteNanos - startNanos);
+
+            // If the request was successful (response code 200),
+            // then parse the response straight from the input stream.
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                // Count the bytes as they come over the wire, before decompressing them
+                inputStream = new CountingInputStream(response.getBody());
+
+                boolean isGzipped = "gzip".equalsIgnoreCase(response.getHeader("Content-Encoding"));
+                InputStream responseStream =
+                        isGzipped ? new GZIPInputStream(inputStream) : inputStream;
+                page = BookJsonParser.parse(responseStream, cancellationSignal, batchSize,
+                        listener);
+
+                // Parsing pulls the body from the network as it goes, so the time blocked in
+                // reads is the download and the rest is decompressing and parsing
+                long endNanos = System.nanoTime();
+                long downloadNanos = inputStream.getReadNanos();
+                sMetrics.recordDuration(SearchMetrics.Stage.DOWNLOAD, downloadNanos);
+                sMetrics.recordDuration(SearchMetrics.Stage.PARSE,
+                        endNanos - firstByteNanos - downloadNanos);
+                sMetrics.recordDuration(SearchMetrics.Stage.QUERY, endNanos - startNanos);
+                sMetrics.recordSize(SearchMetrics.Stage.RESPONSE_BYTES, inputStream.getCount());
+
+                Logger.i(LOG_TAG, "Received " + inputStream.getCount() + " bytes"
+                        + (isGzipped ? " (gzip)" : "") + ". Time to first byte: "
+                        + firstByteMillis + " ms, time to last byte: "
+                        + (elapsedRealtime() - startTime) + " ms.");
+            } else {
+                Logger.e(LOG_TAG, "Error response code: " + responseCode);
+            }
+        } catch (IOException e) {
+            // A cancelled call shows up as an IOException on this thread
+            if (call.isCanceled()) {
+                logCancellation(response, inputStream, startTime);
+                throw new OperationCanceledException();
+            }
+            if (e instanceof RequestShedException) {
+                Logger.i(LOG_TAG, "Request shed: " + e.getMessage() + ", "
+                        + sScheduler.getShedCount() + " so far.");
+            } else {
+                Logger.e(LOG_TAG, "Problem retrieving the book JSON results. ", e);
+            }
+            error = e;
+        } catch (OperationCanceledException e) {
+            // Thrown by the parser when it notices the cancellation between two books
+            logCancellation(response, inputStream, startTime);
+            throw e;
+        } finally {
+            if (cancellationSignal != null) {
+                cancellationSignal.setOnCancelListener(null);
+            }
+            // Closing the response, instead of disconnecting, lets the transport reuse the
+            // connection for the next request
+            if (response != null) {
+                response.close();
+            }
+        }
+
+        long elapsedMillis = elapsedRealtime() - startTime;
+        return new BookQueryResult(responseCode, page, elapsedMillis, error);
+    }
+
+    /**
+     * Returns the time in milliseconds since some fixed point, used to measure durations.
+     */
+    private static long elapsedRealtime() {
+        return System.nanoTime() / 1000000;
+    }
+
+    /**
+     * Log how much of the response had been downloaded when a request was cancelled, and
+     * estimate the bytes and time saved by not downloading the rest, based on the content length
+     * and the download rate so far.
+     */
+    private static void logCancellation(HttpResponse response, CountingInputStream inputStream,
+                                        long startTime) {
+        long elapsedMillis = elapsedRealtime() - startTime;
+        long bytesRead = inputStream == null ? 0 : inputStream.getCount();
+        long contentLength = response == null ? -1 : response.getContentLength();
+
+        if (contentLength <= 0) {
+            Logger.i(LOG_TAG, "Request cancelled after " + elapsedMillis + " ms, " + bytesRead
+                    + " bytes read; response size unknown.");
+            return;
+        }
+
+        long bytesSaved = Math.max(0, contentLength - bytesRead);
+        long millisSaved = bytesRead == 0 ? 0 : bytesSaved * elapsedMillis / bytesRead;
+        Logger.i(LOG_TAG, "Request cancelled after " + elapsedMillis + " ms, " + bytesRead + " of "
+                + contentLength + " bytes read. Saved " + bytesSaved + " bytes and about "
+                + millisSaved + " ms.");
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.android.booksearch.core;
+
+import java.io.IOException;
+
+/**
+ * {@link HttpTransport} that sends each request through another transport once its
+ * {@link RequestScheduler} allows it, and reports every response back to the scheduler so it
+ * can honor quota errors and Retry-After headers.
+ */
+public final class RateLimitedTransport implements HttpTransport {
+
+    /** Transport sending the requests */
+    private final HttpTransport mDelegate;
+
+    /** Decides when requests may be sent */
+    private final RequestScheduler mScheduler;
+
+    /**
+     * Constructs a new {@link RateLimitedTransport}.
+     *
+     * @param delegate transport sending the requests
+     * @param scheduler decides when requests may be sent, shared by every transport that must
+     *                  stay within the same quota
+     */
+    public RateLimitedTransport(HttpTransport delegate, RequestScheduler scheduler) {
+        mDelegate = delegate;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Returns the scheduler deciding when requests may be sent.
+     */
+    public RequestScheduler getScheduler() {
+        return mScheduler;
+    }
+
+    @Override
+    public Call newCall(HttpRequest request) {
+        return new RateLimitedCall(request.getPriority(), mDelegate.newCall(request));
+    }
+
+    /**
+     * Call that waits for the scheduler before executing the call of the delegate.
+     */
+    private final class RateLimitedCall implements Call {
+
+        /** How urgent the request is */
+        private final HttpRequest.Priority mPriority;
+
+        /** Call sending the request */
+        private final Call mCall;
+
+        RateLimitedCall(HttpRequest.Priority priority, Call call) {
+            mPriority = priority;
+            mCall = call;
+        }
+
+        @Override
+        public HttpResponse execute() throws IOException {
+            mScheduler.acquire(mPriority, mCall);
+            HttpResponse response = mCall.execute();
+            mScheduler.onResponse(response);
+            return response;
+        }
+
+        @Override
+        public void cancel() {
+            mCall.cancel();
+            mScheduler.wakeUp();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return mCall.isCanceled();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.booksearch.core;
+
+/**
+ * Class that represents how a {@link PolicyTransport} retries and hedges requests.
+ */
+
+public final class RequestPolicy {
+
+    /** Policy with up to 3 attempts, backoff from 250 ms, and hedging past the 95th percentile */
+    public static final RequestPolicy DEFAULT =
+            new RequestPolicy(3, 250, 2000, 20000, 0.95, 20, 200);
+
+    /** Policy that sends every request exactly once, as the app did before policies */
+    public static final RequestPolicy NONE = new RequestPolicy(1, 0, 0, 0, 0, 0, 0);
+
+    /** Maximum amount of attempts per request, the first one included */
+    private final int mMaxAttempts;
+
+    /** Upper bound of the backoff before the first retry, in milliseconds */
+    private final long mBaseBackoffMillis;
+
+    /** Upper bound of the backoff before any retry, in milliseconds */
+    private final long mMaxBackoffMillis;
+
+    /** Time after which no more retries are started, in milliseconds, or 0 for no limit */
+    private final long mRetryDeadlineMillis;
+
+    /** Latency percentile after which a hedged request is sent, or 0 to never hedge */
+    private final double mHedgePercentile;
+
+    /** Amount of latency samples needed before hedging */
+    private final int mMinHedgeSamples;
+
+    /** Minimum time to wait before hedging, in milliseconds */
+    private final long mMinHedgeDelayMillis;
+
+    /**
+     * Constructor for a new RequestPolicy object
+     * @param maxAttempts Maximum amount of attempts per request, the first one included
+     * @param baseBackoffMillis Upper bound of the backoff before the first retry, in ms
+     * @param maxBackoffMillis Upper bound of the backoff before any retry, in ms
+     * @param retryDeadlineMillis Time after which no more retries start, in ms, or 0
+     * @param hedgePercentile Latency percentile after which to hedge, between 0 and 1, or 0
+     * @param minHedgeSamples Amount of latency samples needed before hedging
+     * @param minHedgeDelayMillis Minimum time to wait before hedging, in ms
+     */
+    public RequestPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis,
+                         long retryDeadlineMillis, double hedgePercentile, int minHedgeSamples,
+                         long minHedgeDelayMillis) {
+        mMaxAttempts = maxAttempts;
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+        mRetryDeadlineMillis = retryDeadlineMillis;
+        mHedgePercentile = hedgePercentile;
+        mMinHedgeSamples = minHedgeSamples;
+        mMinHedgeDelayMillis = minHedgeDelayMillis;
+    }
+
+    /**
+     * Returns the maximum amount of attempts per request
+     * @return maximum attempts, the first one included
+     */
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * Returns the upper bound of the backoff before the first retry
+     * @return base backoff in milliseconds
+     */
+    public long getBaseBackoffMillis() {
+        return mBaseBackoffMillis;
+    }
+
+    /**
+     * Returns the upper bound of the backoff before any retry
+     * @return maximum backoff in milliseconds
+     */
+    public long getMaxBackoffMillis() {
+        return mMaxBackoffMillis;
+    }
+
+    /**
+     * Returns the time after which no more retries are started
+     * @return retry deadline in milliseconds, or 0 for no limit
+     */
+    public long getRetryDeadlineMillis() {
+        return mRetryDeadlineMillis;
+    }
+
+    /**
+     * Returns the latency percentile after which a hedged request is sent
+     * @return percentile between 0 and 1, or 0 to never hedge
+     */
+    public double getHedgePercentile() {
+        return mHedgePercentile;
+    }
+
+    /**
+     * Returns the amount of latency samples needed before hedging
+     * @return minimum amount of samples
+     */
+    public int getMinHedgeSamples() {
+        return mMinHedgeSamples;
+    }
+
+    /**
+     * Returns the minimum time to wait before hedging
+     * @return minimum hedge delay in milliseconds
+     */
+    public long getMinHedgeDelayMillis() {
+        return mMinHedgeDelayMillis;
+    }
+}
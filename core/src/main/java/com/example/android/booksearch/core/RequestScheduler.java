@@ -0,0 +1,243 @@
+package com.example.android.booksearch.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when each request to the Google Books API may be sent, so the app stays within its
+ * quota however many loaders, pages and prefetches are requesting at the same time.
+ *
+ * Requests take tokens from a token bucket, which allows short bursts and refills at a steady
+ * rate. Requests are served by {@link HttpRequest.Priority}: interactive ones wait for a token
+ * and go before any other, background ones wait while interactive ones are waiting, and
+ * prefetches never wait, but are shed with a {@link RequestShedException} whenever there is
+ * pressure. Only interactive requests may take the last few tokens of the bucket.
+ *
+ * When the server answers 429 Too Many Requests, or sends a Retry-After header, no request is
+ * sent until the time given has passed: interactive requests wait for it, up to a limit, and
+ * every other request is shed.
+ */
+public final class RequestScheduler {
+
+    /** Response code sent when the quota is exceeded; not defined by HttpURLConnection */
+    public static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /** Time to hold requests after a 429 response without a valid Retry-After header, in ms */
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 5000;
+
+    /** Format of Retry-After headers holding a date instead of an amount of seconds */
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    /** Maximum amount of tokens in the bucket, the largest burst of requests */
+    private final int mCapacity;
+
+    /** Tokens added to the bucket per second */
+    private final double mTokensPerSecond;
+
+    /** Tokens only interactive requests may take */
+    private final int mInteractiveReserve;
+
+    /** Maximum time an interactive request waits to be sent, in milliseconds */
+    private final long mMaxWaitMillis;
+
+    /** Tokens in the bucket. Guarded by this. */
+    private double mTokens;
+
+    /** Time the tokens were last refilled at, from System.nanoTime(). Guarded by this. */
+    private long mRefillTime;
+
+    /** Time no request may be sent before, from System.nanoTime(). Guarded by this. */
+    private long mThrottledUntil;
+
+    /** Amount of interactive requests waiting for a token. Guarded by this. */
+    private int mInteractiveWaiting;
+
+    /** Amount of requests shed so far. Guarded by this. */
+    private int mShedCount;
+
+    /**
+     * Constructs a new {@link RequestScheduler} with a full bucket.
+     *
+     * @param capacity maximum amount of tokens, the largest burst of requests
+     * @param tokensPerSecond tokens added per second, the steady request rate
+     * @param interactiveReserve tokens only interactive requests may take
+     * @param maxWaitMillis maximum time an interactive request waits to be sent, in ms
+     */
+    public RequestScheduler(int capacity, double tokensPerSecond, int interactiveReserve,
+                            long maxWaitMillis) {
+        mCapacity = capacity;
+        mTokensPerSecond = tokensPerSecond;
+        mInteractiveReserve = interactiveReserve;
+        mMaxWaitMillis = maxWaitMillis;
+        mTokens = capacity;
+        mRefillTime = System.nanoTime();
+        mThrottledUntil = mRefillTime;
+    }
+
+    /**
+     * Take a token for a request of the given priority, waiting for one if the priority allows.
+     *
+     * @param priority how urgent the request is
+     * @param call call of the request; cancelling it, followed by {@link #wakeUp()}, ends the
+     *             wait
+     * @throws RequestShedException if the request must not be sent
+     * @throws IOException if the call was cancelled
+     */
+    public synchronized void acquire(HttpRequest.Priority priority, HttpTransport.Call call)
+            throws IOException {
+        boolean isInteractive = priority == HttpRequest.Priority.INTERACTIVE;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mMaxWaitMillis);
+        boolean isWaiting = false;
+        try {
+            while (true) {
+                if (call.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                long now = System.nanoTime();
+                refill(now);
+
+                long waitNanos;
+                if (now - mThrottledUntil < 0) {
+                    if (!isInteractive) {
+                        throw shed("Rate limited by the server, " + priority + " request shed");
+                    }
+                    waitNanos = mThrottledUntil - now;
+                } else {
+                    // Less urgent requests leave the reserve, and any token at all while an
+                    // interactive request is waiting, to the interactive ones
+                    int reserve = isInteractive ? 0 : mInteractiveReserve;
+                    boolean mustYield = !isInteractive && mInteractiveWaiting > 0;
+                    if (!mustYield && mTokens >= 1 + reserve) {
+                        mTokens -= 1;
+                        return;
+                    }
+                    if (priority == HttpRequest.Priority.PREFETCH) {
+                        throw shed("No requests left to spare, prefetch shed");
+                    }
+                    waitNanos = Math.max(0, (long) ((1 + reserve - mTokens)
+                            * TimeUnit.SECONDS.toNanos(1) / mTokensPerSecond));
+                }
+
+                if (isInteractive) {
+                    if (now + waitNanos - deadline > 0) {
+                        throw shed("Rate limited for "
+                                + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " more ms");
+                    }
+                    if (!isWaiting) {
+                        mInteractiveWaiting++;
+                        isWaiting = true;
+                    }
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, 1000000));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to send the request");
+        } finally {
+            if (isWaiting) {
+                mInteractiveWaiting--;
+                // Background requests waiting behind this one may go now
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wake up the requests waiting for a token, so cancelled ones stop waiting.
+     */
+    public synchronized void wakeUp() {
+        notifyAll();
+    }
+
+    /**
+     * Hold every request if the response says the quota is exceeded, for as long as its
+     * Retry-After header says, or a default time if there is none.
+     *
+     * @param response response received for a request
+     */
+    public void onResponse(HttpResponse response) {
+        long retryAfterMillis = parseRetryAfter(response.getHeader("Retry-After"),
+                System.currentTimeMillis());
+        if (retryAfterMillis < 0 && response.getCode() == HTTP_TOO_MANY_REQUESTS) {
+            retryAfterMillis = DEFAULT_RETRY_AFTER_MILLIS;
+        }
+        if (retryAfterMillis >= 0) {
+            throttle(retryAfterMillis);
+        }
+    }
+
+    /**
+     * Send no requests for the given time, and empty the bucket so requests ramp up again
+     * slowly afterwards.
+     *
+     * @param millis time to hold requests for, in milliseconds
+     */
+    public synchronized void throttle(long millis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (until - mThrottledUntil > 0) {
+            mThrottledUntil = until;
+        }
+        mTokens = 0;
+        mRefillTime = mThrottledUntil;
+    }
+
+    /**
+     * Returns the amount of requests shed so far.
+     */
+    public synchronized int getShedCount() {
+        return mShedCount;
+    }
+
+    /**
+     * Returns the time to hold requests for given by a Retry-After header, either an amount of
+     * seconds or an HTTP date.
+     *
+     * @param retryAfter value of the header, or null
+     * @param nowMillis current time, to compare dates with
+     * @return time in milliseconds, or -1 if there is no valid header
+     */
+    static long parseRetryAfter(String retryAfter, long nowMillis) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        retryAfter = retryAfter.trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter)));
+        } catch (NumberFormatException e) {
+            // Not seconds, so it should be a date
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, format.parse(retryAfter).getTime() - nowMillis);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Add the tokens earned since the last refill, up to the capacity. Must be called holding
+     * this.
+     */
+    private void refill(long now) {
+        if (now - mRefillTime > 0) {
+            mTokens = Math.min(mCapacity, mTokens
+                    + (now - mRefillTime) * mTokensPerSecond / TimeUnit.SECONDS.toNanos(1));
+            mRefillTime = now;
+        }
+    }
+
+    /**
+     * Returns the exception for a shed request, counting it. Must be called holding this.
+     */
+    private RequestShedException shed(String message) {
+        mShedCount++;
+        return new RequestShedException(message);
+    }
+}
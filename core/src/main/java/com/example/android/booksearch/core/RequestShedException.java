@@ -0,0 +1,22 @@
+package com.example.android.booksearch.core;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request is dropped by a {@link RequestScheduler} instead of sent, because the
+ * app is being rate limited and the request can't wait. Such requests are not worth retrying
+ * until the limit is over.
+ */
+public class RequestShedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new {@link RequestShedException}.
+     *
+     * @param message why the request was dropped
+     */
+    public RequestShedException(String message) {
+        super(message);
+    }
+}
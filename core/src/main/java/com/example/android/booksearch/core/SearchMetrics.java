@@ -0,0 +1,177 @@
+package com.example.android.booksearch.core;
+
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Histograms of how long each stage of a search takes, and how many bytes it downloads, over
+ * every query since the process started. Recording is cheap enough to always stay on; the
+ * histograms can be dumped as a summary or exported bucket by bucket for analysis.
+ */
+public final class SearchMetrics {
+
+    /**
+     * Stage of a search, in the order it happens.
+     */
+    public enum Stage {
+        /** Time a load waited for the executor before running */
+        LOADER_QUEUE(true),
+        /** DNS lookup, TCP and TLS handshakes of a request, none if a connection was reused */
+        CONNECT(true),
+        /** Time from sending a query until its response headers, retries and waits included */
+        FIRST_BYTE(true),
+        /** Time spent waiting for the response body to come over the network */
+        DOWNLOAD(true),
+        /** Time spent decompressing and parsing the response body, downloading excluded */
+        PARSE(true),
+        /** Whole query, from sending it until its page of books is parsed */
+        QUERY(true),
+        /** Bytes of a response body, as they came over the wire */
+        RESPONSE_BYTES(false),
+        /** Time from starting a new search until its first books are delivered to the screen */
+        FIRST_ROW(true),
+        /** Time from starting a new search until its first page is delivered complete */
+        COMPLETE(true),
+        /** Time to bind a list item on the main thread */
+        BIND(true);
+
+        /** Whether the stage records durations, in microseconds, rather than sizes */
+        private final boolean mIsDuration;
+
+        Stage(boolean isDuration) {
+            mIsDuration = isDuration;
+        }
+
+        /**
+         * Returns whether the stage records durations, in microseconds, rather than sizes.
+         */
+        public boolean isDuration() {
+            return mIsDuration;
+        }
+    }
+
+    /** Single instance of the metrics, shared by the whole search pipeline */
+    private static final SearchMetrics sInstance = new SearchMetrics();
+
+    /** Histogram of each stage */
+    private final Map<Stage, Histogram> mHistograms = new EnumMap<>(Stage.class);
+
+    /** Time the metrics started being recorded, from System.nanoTime() */
+    private final long mStartNanos = System.nanoTime();
+
+    /**
+     * Returns the single {@link SearchMetrics} instance.
+     */
+    public static SearchMetrics getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Constructs a new {@link SearchMetrics}. Only tests need metrics of their own.
+     */
+    SearchMetrics() {
+        for (Stage stage : Stage.values()) {
+            mHistograms.put(stage, new Histogram());
+        }
+    }
+
+    /**
+     * Record how long a stage took.
+     *
+     * @param stage stage that records durations
+     * @param nanos duration in nanoseconds, as measured with System.nanoTime()
+     */
+    public void recordDuration(Stage stage, long nanos) {
+        mHistograms.get(stage).record(nanos / 1000);
+    }
+
+    /**
+     * Record the size of a stage.
+     *
+     * @param stage stage that records sizes
+     * @param bytes size in bytes
+     */
+    public void recordSize(Stage stage, long bytes) {
+        mHistograms.get(stage).record(bytes);
+    }
+
+    /**
+     * Returns the histogram of the given stage.
+     */
+    public Histogram getHistogram(Stage stage) {
+        return mHistograms.get(stage);
+    }
+
+    /**
+     * Write a summary of every stage: amount of values and their rate since the metrics
+     * started, percentiles, maximum and mean. Durations are written in milliseconds.
+     *
+     * @param writer writer to write the summary to
+     */
+    public void dump(PrintWriter writer) {
+        double uptimeSeconds = (System.nanoTime() - mStartNanos) / 1e9;
+        writer.println(String.format(Locale.US, "Search metrics over %.0f s", uptimeSeconds));
+        writer.println(String.format(Locale.US, "%-15s %8s %8s %10s %10s %10s %10s %10s",
+                "stage", "n", "per s", "p50", "p95", "p99", "max", "mean"));
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = mHistograms.get(stage);
+            long count = histogram.getCount();
+            writer.println(String.format(Locale.US, "%-15s %8d %8.2f %10s %10s %10s %10s %10s",
+                    stage, count, count / uptimeSeconds,
+                    format(stage, histogram.getPercentile(0.5)),
+                    format(stage, histogram.getPercentile(0.95)),
+                    format(stage, histogram.getPercentile(0.99)),
+                    format(stage, count == 0 ? -1 : histogram.getMax()),
+                    format(stage, count == 0 ? -1 : histogram.getSum() / count)));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write every bucket holding values, as CSV with a header line: stage, unit, smallest and
+     * largest value of the bucket, and amount of values in it.
+     *
+     * @param writer writer to write the buckets to
+     */
+    public void export(PrintWriter writer) {
+        writer.println("stage,unit,lower,upper,count");
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = mHistograms.get(stage);
+            String unit = stage.isDuration() ? "us" : "bytes";
+            for (int i = 0; i < Histogram.getBucketCount(); i++) {
+                long count = histogram.getBucketValueCount(i);
+                if (count > 0) {
+                    writer.println(stage + "," + unit + "," + Histogram.getLowerBound(i) + ","
+                            + Histogram.getUpperBound(i) + "," + count);
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = mHistograms.get(stage);
+            builder.append(String.format(Locale.US, "%s: n=%d p50=%s p95=%s p99=%s; ", stage,
+                    histogram.getCount(), format(stage, histogram.getPercentile(0.5)),
+                    format(stage, histogram.getPercentile(0.95)),
+                    format(stage, histogram.getPercentile(0.99))));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns a value of the given stage with its unit, or "-" if there is none.
+     */
+    private static String format(Stage stage, long value) {
+        if (value < 0) {
+            return "-";
+        }
+        return stage.isDuration()
+                ? String.format(Locale.US, "%.1fms", value / 1000.0) : value + "B";
+    }
+}
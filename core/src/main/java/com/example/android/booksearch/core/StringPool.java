@@ -0,0 +1,47 @@
+package com.example.android.booksearch.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of strings shared between books, such as author names and the parts of URLs every book
+ * has in common, so that each distinct string is kept in memory once however many books repeat
+ * it.
+ *
+ * Unlike {@link String#intern()}, the pool is bounded: once it holds {@link #MAX_SIZE} strings it
+ * starts over, which only means later copies stop being shared with earlier ones.
+ */
+final class StringPool {
+
+    /** Maximum amount of distinct strings in the pool */
+    private static final int MAX_SIZE = 4096;
+
+    /** Pooled strings, each mapped to itself */
+    private static final Map<String, String> sPool = new HashMap<>();
+
+    private StringPool() {
+    }
+
+    /**
+     * Returns the pooled string equal to the given one, adding it to the pool if there is none.
+     *
+     * @param string string to share, may be null
+     * @return equal pooled string, or null if the string is null
+     */
+    static String intern(String string) {
+        if (string == null) {
+            return null;
+        }
+        synchronized (sPool) {
+            String pooled = sPool.get(string);
+            if (pooled == null) {
+                if (sPool.size() >= MAX_SIZE) {
+                    sPool.clear();
+                }
+                sPool.put(string, string);
+                pooled = string;
+            }
+            return pooled;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.android.booksearch.core;
+
+/**
+ * Class that represents the configuration of an {@link HttpTransport}.
+ */
+
+public final class TransportConfig {
+
+    /** Configuration with the timeouts the app has always used */
+    public static final TransportConfig DEFAULT = new TransportConfig(15000, 10000, 5);
+
+    /** Time to wait for a connection to be established, in milliseconds */
+    private final int mConnectTimeoutMillis;
+
+    /** Time to wait for data while reading a response, in milliseconds */
+    private final int mReadTimeoutMillis;
+
+    /** Maximum amount of idle connections kept alive for reuse, per host */
+    private final int mMaxIdleConnections;
+
+    /**
+     * Constructor for a new TransportConfig object
+     * @param connectTimeoutMillis Time to wait for a connection, in milliseconds
+     * @param readTimeoutMillis Time to wait for data while reading, in milliseconds
+     * @param maxIdleConnections Maximum amount of idle connections kept alive, per host
+     */
+    public TransportConfig(int connectTimeoutMillis, int readTimeoutMillis,
+                           int maxIdleConnections) {
+        mConnectTimeoutMillis = connectTimeoutMillis;
+        mReadTimeoutMillis = readTimeoutMillis;
+        mMaxIdleConnections = maxIdleConnections;
+    }
+
+    /**
+     * Returns the time to wait for a connection to be established
+     * @return connect timeout in milliseconds
+     */
+    public int getConnectTimeoutMillis() {
+        return mConnectTimeoutMillis;
+    }
+
+    /**
+     * Returns the time to wait for data while reading a response
+     * @return read timeout in milliseconds
+     */
+    public int getReadTimeoutMillis() {
+        return mReadTimeoutMillis;
+    }
+
+    /**
+     * Returns the maximum amount of idle connections kept alive for reuse
+     * @return maximum idle connections, per host
+     */
+    public int getMaxIdleConnections() {
+        return mMaxIdleConnections;
+    }
+}
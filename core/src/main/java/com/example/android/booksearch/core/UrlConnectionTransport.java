@@ -0,0 +1,219 @@
+package com.example.android.booksearch.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Map;
+
+/**
+ * Default {@link HttpTransport}, built on {@link HttpURLConnection}.
+ *
+ * Connections are never disconnected after a successful request. Instead, the rest of each
+ * response body is read and its stream closed, which hands the connection back to the pool kept
+ * by HttpURLConnection, so the next search or page to the same host skips the TCP and TLS
+ * handshakes. Only cancelled calls disconnect.
+ */
+public final class UrlConnectionTransport implements HttpTransport {
+
+    /**
+     * Maximum amount of unread body bytes read and thrown away when a response is closed, so
+     * its connection can be reused. Larger leftovers are cheaper to drop with the connection.
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    /** Configuration of this transport */
+    private final TransportConfig mConfig;
+
+    /**
+     * Constructs a new {@link UrlConnectionTransport}.
+     *
+     * @param config timeouts; its pool size only applies through
+     *               {@link #configureConnectionPool(TransportConfig)}
+     */
+    public UrlConnectionTransport(TransportConfig config) {
+        mConfig = config;
+    }
+
+    /**
+     * Set the size of the connection pool of HttpURLConnection. The pool is read from system
+     * properties, so this applies to every HttpURLConnection of the process, not only to this
+     * transport, and it must be called once at startup, before any connection is opened.
+     *
+     * @param config configuration holding the pool size
+     */
+    public static void configureConnectionPool(TransportConfig config) {
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(config.getMaxIdleConnections()));
+    }
+
+    @Override
+    public Call newCall(HttpRequest request) {
+        return new UrlConnectionCall(request);
+    }
+
+    /**
+     * Call that opens an {@link HttpURLConnection} for its request.
+     */
+    private final class UrlConnectionCall implements Call {
+
+        /** Request to send */
+        private final HttpRequest mRequest;
+
+        /** Connection opened for the request, or null before execute(). Guarded by this. */
+        private HttpURLConnection mConnection;
+
+        /** Whether the call was cancelled. Guarded by this. */
+        private boolean mCanceled;
+
+        UrlConnectionCall(HttpRequest request) {
+            mRequest = request;
+        }
+
+        @Override
+        public HttpResponse execute() throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) mRequest.getUrl().openConnection();
+            synchronized (this) {
+                if (mCanceled) {
+                    throw new IOException("Canceled");
+                }
+                mConnection = connection;
+            }
+
+            connection.setConnectTimeout(mConfig.getConnectTimeoutMillis());
+            connection.setReadTimeout(mConfig.getReadTimeoutMillis());
+            connection.setRequestMethod("GET");
+
+            // Responses are cached by BookCache, so keep them out of the HTTP response cache
+            // installed for thumbnails
+            connection.setUseCaches(false);
+            for (Map.Entry<String, String> header : mRequest.getHeaders().entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            // Resolves the host and completes the TCP and TLS handshakes, unless a pooled
+            // connection is reused
+            long connectStartNanos = System.nanoTime();
+            connection.connect();
+            SearchMetrics.getInstance().recordDuration(SearchMetrics.Stage.CONNECT,
+                    System.nanoTime() - connectStartNanos);
+
+            // Blocks until the status line and headers are received
+            int code = connection.getResponseCode();
+            return new UrlConnectionResponse(connection, code);
+        }
+
+        @Override
+        public void cancel() {
+            HttpURLConnection connection;
+            synchronized (this) {
+                mCanceled = true;
+                connection = mConnection;
+            }
+            // Disconnecting makes any blocked connect or read fail right away
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+
+        @Override
+        public synchronized boolean isCanceled() {
+            return mCanceled;
+        }
+    }
+
+    /**
+     * Response read from an {@link HttpURLConnection}.
+     */
+    private static final class UrlConnectionResponse implements HttpResponse {
+
+        /** Connection the response is read from */
+        private final HttpURLConnection mConnection;
+
+        /** HTTP response code */
+        private final int mCode;
+
+        /** Body stream, or null until getBody() is called */
+        private DrainingInputStream mBody;
+
+        UrlConnectionResponse(HttpURLConnection connection, int code) {
+            mConnection = connection;
+            mCode = code;
+        }
+
+        @Override
+        public int getCode() {
+            return mCode;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        @Override
+        public long getContentLength() {
+            return mConnection.getContentLength();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (mBody == null) {
+                // Error responses keep their body in the error stream
+                InputStream body = mCode >= HttpURLConnection.HTTP_BAD_REQUEST
+                        ? mConnection.getErrorStream() : mConnection.getInputStream();
+
+                // Responses with no body have no error stream
+                if (body == null) {
+                    body = new ByteArrayInputStream(new byte[0]);
+                }
+                mBody = new DrainingInputStream(body);
+            }
+            return mBody;
+        }
+
+        @Override
+        public void close() {
+            try {
+                // Read what is left of the body so the connection can be reused
+                getBody().close();
+            } catch (IOException e) {
+                // The connection is broken and won't be reused, there is nothing left to do
+                mConnection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Stream that reads and discards what is left of the body before closing, since
+     * HttpURLConnection only returns connections whose body was read to the end to its pool.
+     */
+    private static final class DrainingInputStream extends FilterInputStream {
+
+        /** Whether the stream was closed already */
+        private boolean mClosed;
+
+        DrainingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            try {
+                byte[] buffer = new byte[1024];
+                int drained = 0;
+                int count;
+                while (drained < MAX_DRAIN_BYTES && (count = in.read(buffer)) != -1) {
+                    drained += count;
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
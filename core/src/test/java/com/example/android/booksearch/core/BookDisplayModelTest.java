@@ -0,0 +1,90 @@
+package com.example.android.booksearch.core;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BookDisplayModel}.
+ */
+public class BookDisplayModelTest {
+
+    private static final Book BOOK = new Book("1", "The Hobbit",
+            new ArrayList<>(Arrays.asList("J. R. R. Tolkien", "Christopher Tolkien")), 4.5, 1234,
+            "https://books.google.com/books?id=1",
+            "http://books.google.com/books/content?id=1&printsec=frontcover&img=1&zoom=5&edge=curl");
+
+    @Test
+    public void formatsEveryField() {
+        BookDisplayModel model = BOOK.getDisplayModel();
+        assertEquals("The Hobbit", model.getTitle());
+        assertEquals("J. R. R. Tolkien, Christopher Tolkien", model.getAuthors());
+        assertEquals("4.5", model.getRating());
+        assertEquals("(1234)", model.getRatingsCount());
+        assertEquals("http://books.google.com/books/content?id=1&printsec=frontcover&img=1&zoom=5",
+                model.getThumbnailUrl());
+    }
+
+    @Test
+    public void missingValuesAreNull() {
+        BookDisplayModel model = new BookDisplayModel("Untitled", new ArrayList<String>(), -1, -1,
+                "http://books.google.com/thumbnail");
+        assertNull(model.getAuthors());
+        assertNull(model.getRating());
+        assertNull(model.getRatingsCount());
+    }
+
+    @Test
+    public void textIsFormattedOnce() {
+        // Every bind of the book reads the same strings, formatted when the book was created
+        BookDisplayModel model = BOOK.getDisplayModel();
+        assertSame(model, BOOK.getDisplayModel());
+        assertSame(model.getAuthors(), BOOK.getDisplayModel().getAuthors());
+        assertSame(model.getRating(), BOOK.getDisplayModel().getRating());
+        assertSame(model.getRatingsCount(), BOOK.getDisplayModel().getRatingsCount());
+    }
+
+    @Test
+    public void bindingReadsAllocateNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up, and measure what reading the allocation counter allocates by itself
+        int checksum = readForBind(BOOK, 200000);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long overhead = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // The JIT compiler can allocate on this thread now and then, so keep the best of a few
+        // rounds; a getter that builds its value allocates in every one of them
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            before = threads.getThreadAllocatedBytes(threadId);
+            checksum += readForBind(BOOK, 100000);
+            allocated = Math.min(allocated,
+                    threads.getThreadAllocatedBytes(threadId) - before - overhead);
+        }
+
+        assertTrue(checksum != 0);
+        assertEquals(0, allocated);
+    }
+
+    /**
+     * Read every value the list binds and prefetches for a book, as BookAdapter does on the main
+     * thread, the given amount of times.
+     */
+    private static int readForBind(Book book, int times) {
+        int checksum = 0;
+        for (int i = 0; i < times; i++) {
+            BookDisplayModel model = book.getDisplayModel();
+            checksum += model.getTitle().length() + model.getAuthors().length()
+                    + model.getRating().length() + model.getRatingsCount().length()
+                    + model.getThumbnailUrl().length();
+        }
+        return checksum;
+    }
+}
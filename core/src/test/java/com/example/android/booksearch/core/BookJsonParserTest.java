@@ -0,0 +1,111 @@
+package com.example.android.booksearch.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the streaming {@link BookJsonParser} produces the same books as the JSONObject
+ * based {@link ReferenceBookParser} for recorded Google Books responses.
+ */
+public class BookJsonParserTest {
+
+    @Test
+    public void parse_matchesExtractBooks() throws Exception {
+        List<Book> books = assertParity("volumes_tolkien.json");
+        assertEquals(7, books.size());
+    }
+
+    @Test
+    public void parse_missingOptionalFields() throws Exception {
+        List<Book> books = BookJsonParser.parse(open("volumes_tolkien.json")).getBooks();
+
+        // Missing averageRating and ratingsCount
+        assertEquals(-1, books.get(2).getRating(), 0);
+        assertEquals(-1, books.get(2).getRatingsCount());
+
+        // Missing authors and null authors
+        assertTrue(books.get(3).getAuthors().isEmpty());
+        assertTrue(books.get(6).getAuthors().isEmpty());
+
+        // Values that can be coerced to numbers
+        assertEquals(4.0, books.get(4).getRating(), 0);
+        assertEquals(12, books.get(4).getRatingsCount());
+    }
+
+    @Test
+    public void parse_totalItems() throws Exception {
+        assertEquals(732, BookJsonParser.parse(open("volumes_tolkien.json")).getTotalItems());
+        assertEquals(0, BookJsonParser.parse(open("volumes_empty.json")).getTotalItems());
+    }
+
+    @Test
+    public void parse_noItems() throws Exception {
+        List<Book> books = assertParity("volumes_empty.json");
+        assertTrue(books.isEmpty());
+    }
+
+    @Test
+    public void parse_stopsAtIncompleteItem() throws Exception {
+        List<Book> books = assertParity("volumes_incomplete.json");
+        assertEquals(2, books.size());
+    }
+
+    @Test
+    public void parse_deliversFullBatches() throws Exception {
+        final List<List<Book>> batches = new ArrayList<>();
+        List<Book> books = BookJsonParser.parse(open("volumes_tolkien.json"), null, 3,
+                new BookJsonParser.BatchListener() {
+                    @Override
+                    public void onBatchParsed(List<Book> batch) {
+                        batches.add(batch);
+                    }
+                }).getBooks();
+
+        // 7 books make 2 full batches; the last book is only in the page
+        assertEquals(2, batches.size());
+        assertEquals(books.subList(0, 3), batches.get(0));
+        assertEquals(books.subList(3, 6), batches.get(1));
+    }
+
+    /**
+     * Parse the given fixture with both parsers, check that every book is equal and return the
+     * books from the streaming parser.
+     */
+    private static List<Book> assertParity(String fixture) throws IOException {
+        List<Book> expected = ReferenceBookParser.extractBooks(
+                ReferenceBookParser.readFromStream(open(fixture)));
+        List<Book> actual = BookJsonParser.parse(open(fixture)).getBooks();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Book expectedBook = expected.get(i);
+            Book actualBook = actual.get(i);
+            assertEquals(expectedBook.getId(), actualBook.getId());
+            assertEquals(expectedBook.getTitle(), actualBook.getTitle());
+            assertEquals(expectedBook.getAuthors(), actualBook.getAuthors());
+            assertEquals(expectedBook.getRating(), actualBook.getRating(), 0);
+            assertEquals(expectedBook.getRatingsCount(), actualBook.getRatingsCount());
+            assertEquals(expectedBook.getUrl(), actualBook.getUrl());
+            assertEquals(expectedBook.getSmallThumbnailUrl(), actualBook.getSmallThumbnailUrl());
+        }
+        return actual;
+    }
+
+    /**
+     * Open a recorded response from the test resources.
+     */
+    private static InputStream open(String fixture) throws IOException {
+        InputStream inputStream = BookJsonParserTest.class.getClassLoader()
+                .getResourceAsStream(fixture);
+        if (inputStream == null) {
+            throw new IOException("Missing test resource " + fixture);
+        }
+        return inputStream;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.android.booksearch.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BookTable}.
+ */
+public class BookTableTest {
+
+    private final List<Book> mBooks = Arrays.asList(
+            book("1", "J. R. R. Tolkien", 4, 120),
+            book("2", "Humphrey Carpenter", -1, -1),
+            book("3", "J. R. R. Tolkien", 4.5, 30),
+            book("4", "Christopher Tolkien", 4, 300),
+            book("5", "Jos\u00e9 Tolk\u00edn", 3.5, 10));
+
+    @Test
+    public void select_noneKeepsEveryBookInOrder() {
+        BookTable table = BookTable.of(mBooks, null);
+        assertEquals(mBooks, table.select(BookFilter.NONE));
+    }
+
+    @Test
+    public void select_sortsUnratedLast() {
+        BookTable table = BookTable.of(mBooks, null);
+        assertEquals(Arrays.asList("3", "4", "1", "5", "2"), ids(table.select(
+                BookFilter.NONE.withSortKey(BookFilter.SortKey.RATING))));
+        assertEquals(Arrays.asList("4", "1", "3", "5", "2"), ids(table.select(
+                BookFilter.NONE.withSortKey(BookFilter.SortKey.RATINGS_COUNT))));
+    }
+
+    @Test
+    public void select_filtersByRatingAndAuthor() {
+        BookTable table = BookTable.of(mBooks, null);
+        assertEquals(Arrays.asList("1", "3", "4"),
+                ids(table.select(BookFilter.NONE.withMinRating(4))));
+        assertEquals(Arrays.asList("1", "3", "4"),
+                ids(table.select(BookFilter.NONE.withAuthor(" tolkien "))));
+        assertEquals(Arrays.asList("5"),
+                ids(table.select(BookFilter.NONE.withAuthor("TOLK\u00cdN"))));
+        assertEquals(Collections.emptyList(),
+                ids(table.select(BookFilter.NONE.withAuthor("tolkien").withMinRating(5))));
+    }
+
+    @Test
+    public void select_topMatchesFullSort() {
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            // Few distinct values, so that many books tie
+            double rating = random.nextInt(5) == 0 ? -1 : 1 + random.nextInt(9) / 2.0;
+            int ratingsCount = rating < 0 ? -1 : random.nextInt(50);
+            books.add(book(String.valueOf(i), "Author " + random.nextInt(10), rating,
+                    ratingsCount));
+        }
+
+        BookTable table = BookTable.of(books, null);
+        for (BookFilter.SortKey sortKey : BookFilter.SortKey.values()) {
+            List<Book> expected = new ArrayList<>(books);
+            Collections.sort(expected, comparator(sortKey));
+            BookFilter filter = BookFilter.NONE.withSortKey(sortKey);
+            assertEquals(expected, table.select(filter));
+            assertEquals(expected.subList(0, 25), table.select(filter.withLimit(25)));
+        }
+    }
+
+    @Test
+    public void of_reusesColumnsOfAppendedPages() {
+        BookTable first = BookTable.of(mBooks.subList(0, 3), null);
+        assertSame(first, BookTable.of(mBooks.subList(0, 3), first));
+
+        BookTable second = BookTable.of(mBooks, first);
+        assertEquals(5, second.size());
+        assertEquals(Arrays.asList("3", "4", "1", "5", "2"), ids(second.select(
+                BookFilter.NONE.withSortKey(BookFilter.SortKey.RATING))));
+
+        // Books that don't start with those of the previous table are all read again
+        List<Book> reversed = new ArrayList<>(mBooks);
+        Collections.reverse(reversed);
+        assertEquals(reversed, BookTable.of(reversed, second).select(BookFilter.NONE));
+    }
+
+    /**
+     * Returns the order a sort key stands for: best first, ties in the order of the server.
+     */
+    private static Comparator<Book> comparator(final BookFilter.SortKey sortKey) {
+        return new Comparator<Book>() {
+            @Override
+            public int compare(Book a, Book b) {
+                if (sortKey == BookFilter.SortKey.RELEVANCE) {
+                    return 0;
+                }
+                int byRating = Double.compare(b.getRating(), a.getRating());
+                int byCount = Integer.valueOf(b.getRatingsCount()).compareTo(a.getRatingsCount());
+                if (sortKey == BookFilter.SortKey.RATING) {
+                    return byRating != 0 ? byRating : byCount;
+                }
+                return byCount != 0 ? byCount : byRating;
+            }
+        };
+    }
+
+    private static Book book(String id, String author, double rating, int ratingsCount) {
+        return new Book(id, "Book " + id, new ArrayList<>(Arrays.asList(author)), rating,
+                ratingsCount, "http://books.google.com/books?id=" + id, null);
+    }
+
+    private static List<String> ids(List<Book> books) {
+        List<String> ids = new ArrayList<>();
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+}
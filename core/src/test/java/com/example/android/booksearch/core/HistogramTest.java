@@ -0,0 +1,84 @@
+package com.example.android.booksearch.core;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link Histogram} and the {@link SearchMetrics} built on it.
+ */
+public class HistogramTest {
+
+    @Test
+    public void percentile_empty() {
+        assertEquals(-1, new Histogram().getPercentile(0.5));
+    }
+
+    @Test
+    public void percentile_exactForSmallValues() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10, histogram.getPercentile(0.5));
+        assertEquals(19, histogram.getPercentile(0.95));
+        assertEquals(20, histogram.getPercentile(1));
+        assertEquals(20, histogram.getCount());
+        assertEquals(210, histogram.getSum());
+    }
+
+    @Test
+    public void percentile_withinBucketError() {
+        Histogram histogram = new Histogram();
+        Random random = new Random(42);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            // Spread over several powers of two, like latencies in microseconds
+            values[i] = (long) Math.exp(random.nextDouble() * 16);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[] {0.5, 0.95, 0.99}) {
+            long exact = values[(int) Math.ceil(percentile * values.length) - 1];
+            long estimate = histogram.getPercentile(percentile);
+            assertTrue(estimate >= exact);
+            assertTrue(estimate <= exact + exact / 16 + 1);
+        }
+        assertEquals(values[values.length - 1], histogram.getMax());
+    }
+
+    @Test
+    public void buckets_coverEveryValue() {
+        for (long value : new long[] {0, 15, 16, 17, 1000, 1L << 40, Long.MAX_VALUE}) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(bucket < Histogram.getBucketCount());
+            assertTrue(Histogram.getLowerBound(bucket) <= value);
+            assertTrue(Histogram.getUpperBound(bucket) >= value);
+        }
+        for (int i = 1; i < Histogram.getBucketCount(); i++) {
+            assertEquals(Histogram.getUpperBound(i - 1) + 1, Histogram.getLowerBound(i));
+        }
+    }
+
+    @Test
+    public void metrics_exportRecordedBuckets() {
+        SearchMetrics metrics = new SearchMetrics();
+        metrics.recordDuration(SearchMetrics.Stage.PARSE, 5000000);
+        metrics.recordSize(SearchMetrics.Stage.RESPONSE_BYTES, 20000);
+
+        assertEquals(5000, metrics.getHistogram(SearchMetrics.Stage.PARSE).getMax());
+
+        StringWriter csv = new StringWriter();
+        metrics.export(new PrintWriter(csv));
+        String[] lines = csv.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].startsWith("PARSE,us,"));
+        assertTrue(lines[2].startsWith("RESPONSE_BYTES,bytes,"));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.android.booksearch.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PolicyTransport}, run against a {@link StubHttpServer}.
+ */
+public class PolicyTransportTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Retries right away, never hedges */
+    private static final RequestPolicy RETRY_ONLY = new RequestPolicy(3, 1, 1, 0, 0, 0, 0);
+
+    /** Never retries, hedges past the median once 10 latencies are known */
+    private static final RequestPolicy HEDGE_ONLY = new RequestPolicy(1, 0, 0, 0, 0.5, 10, 0);
+
+    private StubHttpServer mServer;
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    @Test
+    public void execute_retriesServerErrors() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        PolicyTransport transport = start(new StubHttpServer.Dispatcher() {
+            @Override
+            public StubHttpServer.Response dispatch(String target) {
+                int code = requests.incrementAndGet() < 3 ? 503 : 200;
+                return new StubHttpServer.Response(code, new byte[0]);
+            }
+        }, RETRY_ONLY);
+
+        HttpResponse response = get(transport);
+        assertEquals(200, response.getCode());
+        response.close();
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(2, transport.getRetryCount());
+    }
+
+    @Test
+    public void execute_returnsLastServerError() throws Exception {
+        PolicyTransport transport = start(new StubHttpServer.Dispatcher() {
+            @Override
+            public StubHttpServer.Response dispatch(String target) {
+                return new StubHttpServer.Response(503, new byte[0]);
+            }
+        }, RETRY_ONLY);
+
+        HttpResponse response = get(transport);
+        assertEquals(503, response.getCode());
+        response.close();
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void execute_doesNotRetryClientErrors() throws Exception {
+        PolicyTransport transport = start(new StubHttpServer.Dispatcher() {
+            @Override
+            public StubHttpServer.Response dispatch(String target) {
+                return new StubHttpServer.Response(404, new byte[0]);
+            }
+        }, RETRY_ONLY);
+
+        HttpResponse response = get(transport);
+        assertEquals(404, response.getCode());
+        response.close();
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void execute_hedgesSlowRequests() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        PolicyTransport transport = start(new StubHttpServer.Dispatcher() {
+            @Override
+            public StubHttpServer.Response dispatch(String target) {
+                // The first request stalls; its hedged copy answers right away
+                if (requests.incrementAndGet() == 1) {
+                    sleep(5000);
+                }
+                return new StubHttpServer.Response(200, target.getBytes(UTF_8));
+            }
+        }, HEDGE_ONLY);
+        for (int i = 0; i < 10; i++) {
+            transport.getLatencyTracker().record(50);
+        }
+
+        long startTime = System.nanoTime();
+        HttpResponse response = get(transport);
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+        assertEquals(200, response.getCode());
+        response.close();
+        assertEquals(1, transport.getHedgeCount());
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 2000);
+    }
+
+    @Test(expected = IOException.class)
+    public void execute_cancelDuringBackoff() throws Exception {
+        PolicyTransport transport = start(new StubHttpServer.Dispatcher() {
+            @Override
+            public StubHttpServer.Response dispatch(String target) {
+                return new StubHttpServer.Response(503, new byte[0]);
+            }
+        }, new RequestPolicy(3, 60000, 60000, 0, 0, 0, 0));
+
+        final HttpTransport.Call call = newCall(transport);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sleep(200);
+                call.cancel();
+            }
+        }).start();
+        call.execute();
+    }
+
+    private PolicyTransport start(StubHttpServer.Dispatcher dispatcher, RequestPolicy policy)
+            throws IOException {
+        mServer = new StubHttpServer(dispatcher);
+        return new PolicyTransport(new StubServerTransport(mServer, TransportConfig.DEFAULT),
+                policy);
+    }
+
+    private static HttpTransport.Call newCall(HttpTransport transport) throws IOException {
+        return transport.newCall(new HttpRequest(
+                new URL("https://www.googleapis.com/books/v1/volumes?q=x"),
+                Collections.<String, String>emptyMap()));
+    }
+
+    private static HttpResponse get(HttpTransport transport) throws IOException {
+        return newCall(transport).execute();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
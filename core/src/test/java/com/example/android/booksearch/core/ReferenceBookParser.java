@@ -0,0 +1,90 @@
+package com.example.android.booksearch.core;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSONObject based parser the app used before {@link BookJsonParser}, kept as the reference
+ * implementation the streaming parser is tested against.
+ */
+final class ReferenceBookParser {
+
+    private ReferenceBookParser() {
+    }
+
+    /**
+     * Convert the {@link InputStream} into a String which contains the
+     * whole JSON response from the server.
+     */
+    static String readFromStream(InputStream inputStream) throws IOException {
+        StringBuilder output = new StringBuilder();
+
+        if (inputStream != null) {
+            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, "UTF-8");
+            BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
+
+            String line = bufferedReader.readLine();
+
+            while (line != null) {
+                output.append(line);
+                line = bufferedReader.readLine();
+            }
+        }
+        return output.toString();
+    }
+
+    /**
+     * Return a list of {@link Book} objects that has been built up from
+     * parsing a JSON response.
+     */
+    static List<Book> extractBooks(String jsonResponseString) {
+
+        // If the JSON string is empty or null, then return early.
+        if (jsonResponseString == null || jsonResponseString.isEmpty()) {
+            return null;
+        }
+
+        List<Book> books = new ArrayList<>();
+
+        try {
+            JSONObject rootJsonObject = new JSONObject(jsonResponseString);
+            JSONArray listOfBooks = rootJsonObject.getJSONArray("items");
+
+            for (int i = 0; i < listOfBooks.length(); i++) {
+                JSONObject bookJsonObj = listOfBooks.getJSONObject(i);
+                String id = bookJsonObj.optString("id", null);
+                JSONObject volumeInfoJsonObj = bookJsonObj.getJSONObject("volumeInfo");
+                String title = volumeInfoJsonObj.getString("title");
+
+                JSONArray authorsJsonArray = volumeInfoJsonObj.optJSONArray("authors");
+                ArrayList<String> authors = new ArrayList<>();
+                if (authorsJsonArray != null) {
+                    for (int j = 0; j < authorsJsonArray.length(); j++) {
+                        authors.add(authorsJsonArray.getString(j));
+                    }
+                }
+
+                double rating = volumeInfoJsonObj.optDouble("averageRating", -1);
+                int ratingsCount = volumeInfoJsonObj.optInt("ratingsCount", -1);
+                String infoUrl = volumeInfoJsonObj.getString("infoLink");
+                String smallThumbnailUrl = volumeInfoJsonObj.getJSONObject("imageLinks")
+                        .getString("smallThumbnail");
+
+                books.add(new Book(id, title, authors, rating, ratingsCount, infoUrl,
+                        smallThumbnailUrl));
+            }
+
+        } catch (JSONException e) {
+            // Stop at the first incomplete book, keeping the ones before it
+        }
+        return books;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.android.booksearch.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RequestScheduler}.
+ */
+public class RequestSchedulerTest {
+
+    private final HttpTransport.Call mCall = new NeverCanceledCall();
+
+    @Test
+    public void acquire_prefetchLeavesReserveToInteractive() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(3, 0.001, 2, 0);
+        scheduler.acquire(HttpRequest.Priority.PREFETCH, mCall);
+        try {
+            scheduler.acquire(HttpRequest.Priority.PREFETCH, mCall);
+            fail("Prefetch took a reserved token");
+        } catch (RequestShedException expected) {
+            assertEquals(1, scheduler.getShedCount());
+        }
+
+        // The reserved tokens are still there for the user
+        scheduler.acquire(HttpRequest.Priority.INTERACTIVE, mCall);
+        scheduler.acquire(HttpRequest.Priority.INTERACTIVE, mCall);
+    }
+
+    @Test
+    public void acquire_interactiveWaitsForToken() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 10, 0, 5000);
+        scheduler.acquire(HttpRequest.Priority.INTERACTIVE, mCall);
+
+        long startTime = System.nanoTime();
+        scheduler.acquire(HttpRequest.Priority.INTERACTIVE, mCall);
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+        assertTrue("Waited " + elapsedMillis + " ms", elapsedMillis >= 50);
+    }
+
+    @Test
+    public void throttle_shedsAllButInteractive() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(10, 100, 0, 5000);
+        scheduler.throttle(200);
+        for (HttpRequest.Priority priority : new HttpRequest.Priority[] {
+                HttpRequest.Priority.PREFETCH, HttpRequest.Priority.BACKGROUND}) {
+            try {
+                scheduler.acquire(priority, mCall);
+                fail(priority + " request sent while throttled");
+            } catch (RequestShedException expected) {
+            }
+        }
+
+        long startTime = System.nanoTime();
+        scheduler.acquire(HttpRequest.Priority.INTERACTIVE, mCall);
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+        assertTrue("Waited " + elapsedMillis + " ms", elapsedMillis >= 150);
+    }
+
+    @Test(expected = RequestShedException.class)
+    public void acquire_interactiveGivesUpPastMaxWait() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(10, 100, 0, 100);
+        scheduler.throttle(60000);
+        scheduler.acquire(HttpRequest.Priority.INTERACTIVE, mCall);
+    }
+
+    @Test
+    public void parseRetryAfter() {
+        assertEquals(120000, RequestScheduler.parseRetryAfter("120", 0));
+        assertEquals(-1, RequestScheduler.parseRetryAfter(null, 0));
+        assertEquals(-1, RequestScheduler.parseRetryAfter("soon", 0));
+
+        // Thu, 01 Jan 1970 00:00:30 GMT is 30 seconds after the epoch
+        assertEquals(20000,
+                RequestScheduler.parseRetryAfter("Thu, 01 Jan 1970 00:00:30 GMT", 10000));
+    }
+
+    private static final class NeverCanceledCall implements HttpTransport.Call {
+
+        @Override
+        public HttpResponse execute() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return false;
+        }
+    }
+}
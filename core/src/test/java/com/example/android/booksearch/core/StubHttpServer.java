@@ -0,0 +1,256 @@
+package com.example.android.booksearch.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal in-process HTTP/1.1 server bound to the loopback interface, which answers every GET
+ * with the response chosen by a {@link Dispatcher}. Keeps connections alive between requests
+ * and compresses bodies for clients that accept gzip, like the Google Books API does.
+ *
+ * Meant for tests and benchmarks that need real sockets without depending on the network.
+ */
+public final class StubHttpServer implements Closeable {
+
+    /** Charset of the status line and headers */
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /** Chooses the response for each request */
+    private final Dispatcher mDispatcher;
+
+    /** Socket accepting connections */
+    private final ServerSocket mServerSocket;
+
+    /** Amount of requests served so far */
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    /** Amount of connections accepted so far */
+    private final AtomicInteger mConnectionCount = new AtomicInteger();
+
+    /**
+     * Chooses the response for a request.
+     */
+    public interface Dispatcher {
+
+        /**
+         * Returns the response for the given request target, the path and query of the URL.
+         */
+        Response dispatch(String target);
+    }
+
+    /**
+     * Class that represents a canned response of the stub server.
+     */
+    public static final class Response {
+
+        /** HTTP response code */
+        private final int mCode;
+
+        /** Uncompressed body */
+        private final byte[] mBody;
+
+        /**
+         * Constructor for a new Response object
+         * @param code HTTP response code
+         * @param body Uncompressed body
+         */
+        public Response(int code, byte[] body) {
+            mCode = code;
+            mBody = body;
+        }
+
+        /**
+         * Returns the HTTP response code
+         * @return response code
+         */
+        public int getCode() {
+            return mCode;
+        }
+
+        /**
+         * Returns the uncompressed body
+         * @return body bytes
+         */
+        public byte[] getBody() {
+            return mBody;
+        }
+    }
+
+    /**
+     * Starts a new server on a free port of the loopback interface.
+     *
+     * @param dispatcher chooses the response for each request
+     * @throws IOException if the server socket can't be opened
+     */
+    public StubHttpServer(Dispatcher dispatcher) throws IOException {
+        mDispatcher = dispatcher;
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "StubHttpServer-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Returns the base URL of this server, without a trailing slash.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the amount of requests served so far.
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * Returns the amount of connections accepted so far. Fewer connections than requests means
+     * connections were reused.
+     */
+    public int getConnectionCount() {
+        return mConnectionCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mServerSocket.close();
+    }
+
+    /**
+     * Accept connections until the server is closed, serving each one on its own thread.
+     */
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                mConnectionCount.incrementAndGet();
+                Thread connectionThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serveConnection(socket);
+                    }
+                }, "StubHttpServer-connection");
+                connectionThread.setDaemon(true);
+                connectionThread.start();
+            } catch (IOException e) {
+                // The server socket was closed
+                return;
+            }
+        }
+    }
+
+    /**
+     * Serve requests on a connection until the client closes it.
+     */
+    private void serveConnection(Socket socket) {
+        try {
+            // Send each response as soon as it is flushed, instead of waiting for the client to
+            // acknowledge the previous segment, which costs tens of milliseconds on loopback
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+                if (requestLine.isEmpty()) {
+                    continue;
+                }
+
+                // Read headers until the empty line, only remembering whether gzip is accepted
+                boolean acceptsGzip = false;
+                String header;
+                while ((header = readLine(in)) != null && !header.isEmpty()) {
+                    String lowerCaseHeader = header.toLowerCase(Locale.US);
+                    if (lowerCaseHeader.startsWith("accept-encoding:")
+                            && lowerCaseHeader.contains("gzip")) {
+                        acceptsGzip = true;
+                    }
+                }
+
+                // Request line: METHOD SP TARGET SP VERSION
+                String[] parts = requestLine.split(" ");
+                String target = parts.length > 1 ? parts[1] : "/";
+                writeResponse(out, mDispatcher.dispatch(target), acceptsGzip);
+                mRequestCount.incrementAndGet();
+            }
+        } catch (SocketException e) {
+            // The client closed or reset the connection
+        } catch (IOException e) {
+            // Nothing can be sent back on a broken connection
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    /**
+     * Write a response with its status line, headers and, if accepted, gzip compressed body.
+     */
+    private static void writeResponse(OutputStream out, Response response, boolean gzip)
+            throws IOException {
+        byte[] body = response.getBody();
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzipStream = new GZIPOutputStream(compressed);
+            gzipStream.write(body);
+            gzipStream.close();
+            body = compressed.toByteArray();
+        }
+
+        StringBuilder head = new StringBuilder()
+                .append("HTTP/1.1 ").append(response.getCode()).append(" Stub\r\n")
+                .append("Content-Type: application/json; charset=UTF-8\r\n")
+                .append("Content-Length: ").append(body.length).append("\r\n")
+                .append("Connection: keep-alive\r\n");
+        if (gzip) {
+            head.append("Content-Encoding: gzip\r\n");
+        }
+        head.append("\r\n");
+
+        out.write(head.toString().getBytes(ASCII));
+        out.write(body);
+        out.flush();
+    }
+
+    /**
+     * Read a line ending in CRLF or LF, or return null at the end of the stream.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+}
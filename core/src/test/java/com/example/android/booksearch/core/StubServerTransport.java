@@ -0,0 +1,46 @@
+package com.example.android.booksearch.core;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * {@link HttpTransport} that sends every request to a local {@link StubHttpServer} instead of
+ * the host in its URL, keeping the path and query. Requests go through a real
+ * {@link UrlConnectionTransport}, so tests and benchmarks exercise the same connection handling
+ * as the app without touching the network.
+ */
+public final class StubServerTransport implements HttpTransport {
+
+    /** Server receiving the requests */
+    private final StubHttpServer mServer;
+
+    /** Transport used to reach the server */
+    private final HttpTransport mDelegate;
+
+    /**
+     * Constructs a new {@link StubServerTransport}.
+     *
+     * @param server server receiving the requests
+     * @param config timeouts and connection pool size used to reach the server
+     */
+    public StubServerTransport(StubHttpServer server, TransportConfig config) {
+        mServer = server;
+        mDelegate = new UrlConnectionTransport(config);
+    }
+
+    @Override
+    public Call newCall(HttpRequest request) {
+        URL url = request.getUrl();
+        String target = url.getFile().isEmpty() ? "/" : url.getFile();
+
+        URL stubUrl;
+        try {
+            stubUrl = new URL(mServer.getBaseUrl() + target);
+        } catch (MalformedURLException e) {
+            // The base URL and the path of a valid URL always make a valid URL
+            throw new IllegalArgumentException(e);
+        }
+        return mDelegate.newCall(new HttpRequest(stubUrl, request.getHeaders(),
+                request.getPriority()));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.booksearch.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link UrlConnectionTransport}, run against a {@link StubHttpServer}
+ * through a {@link StubServerTransport}.
+ */
+public class UrlConnectionTransportTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private StubHttpServer mServer;
+    private HttpTransport mTransport;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new StubHttpServer(new StubHttpServer.Dispatcher() {
+            @Override
+            public StubHttpServer.Response dispatch(String target) {
+                int code = target.contains("missing") ? 404 : 200;
+                return new StubHttpServer.Response(code, target.getBytes(UTF_8));
+            }
+        });
+        mTransport = new StubServerTransport(mServer, TransportConfig.DEFAULT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    @Test
+    public void execute_keepsPathAndQuery() throws Exception {
+        HttpResponse response = get("https://www.googleapis.com/books/v1/volumes?q=tolkien",
+                Collections.<String, String>emptyMap());
+        assertEquals(200, response.getCode());
+        assertEquals("/books/v1/volumes?q=tolkien", readBody(response.getBody()));
+        response.close();
+    }
+
+    @Test
+    public void execute_reusesConnections() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            HttpResponse response = get("https://www.googleapis.com/books/v1/volumes?q=" + i,
+                    Collections.<String, String>emptyMap());
+            readBody(response.getBody());
+            response.close();
+        }
+        assertEquals(5, mServer.getRequestCount());
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void execute_reusesConnectionsWhenBodyIsNotRead() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "gzip");
+        for (int i = 0; i < 3; i++) {
+            HttpResponse response = get("https://www.googleapis.com/books/v1/missing", headers);
+            assertEquals(404, response.getCode());
+            response.close();
+        }
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void execute_gzip() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "gzip");
+        HttpResponse response = get("https://www.googleapis.com/books/v1/volumes?q=x", headers);
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("/books/v1/volumes?q=x",
+                readBody(new GZIPInputStream(response.getBody())));
+        response.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void execute_afterCancel() throws Exception {
+        HttpTransport.Call call = mTransport.newCall(new HttpRequest(
+                new URL("https://www.googleapis.com/books/v1/volumes?q=x"),
+                Collections.<String, String>emptyMap()));
+        call.cancel();
+        assertTrue(call.isCanceled());
+        call.execute();
+    }
+
+    private HttpResponse get(String url, Map<String, String> headers) throws IOException {
+        return mTransport.newCall(new HttpRequest(new URL(url), headers)).execute();
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return new String(out.toByteArray(), UTF_8);
+    }
+}